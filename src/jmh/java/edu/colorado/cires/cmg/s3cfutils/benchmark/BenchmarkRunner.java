@@ -0,0 +1,36 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler so allocation rates are reported next to throughput and latency
+ * percentiles. Results are written to target/jmh-result.json. Standard JMH command line options are accepted, for
+ * example a benchmark name pattern or -p fileCount=1000 to override a parameter.
+ */
+public final class BenchmarkRunner {
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder()
+        .parent(commandLine)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result("target/jmh-result.json")
+        .shouldFailOnError(true);
+    if (commandLine.getIncludes().isEmpty()) {
+      options.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+    }
+    new Runner(options.build()).run();
+  }
+
+  private BenchmarkRunner() {
+
+  }
+}
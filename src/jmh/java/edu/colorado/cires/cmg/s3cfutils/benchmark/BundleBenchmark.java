@@ -0,0 +1,98 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import edu.colorado.cires.cmg.s3cfutils.framework.S3OperationsImpl;
+import edu.colorado.cires.cmg.s3cfutils.framework.SyncResult;
+import edu.colorado.cires.cmg.s3cfutils.operations.OperationUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraction and bucket synchronization of synthetic template bundles of configurable file count and file size
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BundleBenchmark {
+
+  private static final String BUCKET = "benchmark-deployment-bucket";
+  private static final String NAME = "benchmark-cf-1.0.0";
+
+  @Param({"50", "500"})
+  public int fileCount;
+
+  @Param({"4096", "65536"})
+  public int fileSize;
+
+  private Path workDir;
+  private Path zip;
+  private Path cleanTarget;
+  private Path incrementalTarget;
+  private InMemoryAmazonS3 s3;
+  private S3OperationsImpl s3Operations;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    workDir = Files.createTempDirectory("bundle-benchmark");
+    zip = workDir.resolve(NAME + ".zip");
+    SyntheticBundles.writeZip(zip, NAME, fileCount, fileSize, 1L);
+    cleanTarget = workDir.resolve("clean");
+    incrementalTarget = workDir.resolve("incremental");
+    Files.createDirectories(incrementalTarget);
+    OperationUtils.unzip(zip, incrementalTarget);
+
+    s3 = new InMemoryAmazonS3();
+    s3Operations = new S3OperationsImpl(s3);
+    s3Operations.syncZipToBucket(zip, NAME + "/", BUCKET);
+  }
+
+  /**
+   * Removes the previous full extraction so each one writes every entry
+   */
+  @Setup(Level.Invocation)
+  public void cleanTarget() throws IOException {
+    FileUtils.deleteDirectory(cleanTarget.toFile());
+    Files.createDirectories(cleanTarget);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    s3Operations.close();
+    FileUtils.deleteDirectory(workDir.toFile());
+  }
+
+  @Benchmark
+  public Path unzipFull() {
+    OperationUtils.unzip(zip, cleanTarget);
+    return cleanTarget;
+  }
+
+  @Benchmark
+  public Path unzipUnchanged() {
+    OperationUtils.unzip(zip, incrementalTarget);
+    return incrementalTarget;
+  }
+
+  @Benchmark
+  public SyncResult syncZipUnchanged() {
+    return s3Operations.syncZipToBucket(zip, NAME + "/", BUCKET);
+  }
+}
@@ -0,0 +1,83 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import edu.colorado.cires.cmg.s3cfutils.framework.S3OperationsImpl;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ranged parallel downloads of {@link S3OperationsImpl} against {@link InMemoryAmazonS3} with per call latency, by part
+ * size and number of download threads, including the positional writes and the final checksum
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+
+  private static final String BUCKET = "benchmark-bucket";
+  private static final String KEY = "dataset.bin";
+
+  @Param({"67108864"})
+  public int objectSize;
+
+  @Param({"4194304", "16777216"})
+  public long partSize;
+
+  @Param({"1", "8"})
+  public int downloadThreads;
+
+  @Param({"20"})
+  public long callLatencyMillis;
+
+  private Path dir;
+  private S3OperationsImpl s3Operations;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("download-benchmark");
+    InMemoryAmazonS3 s3 = new InMemoryAmazonS3(SimulatedFaults.Builder.configure("Amazon S3")
+        .withCallLatencyMillis(callLatencyMillis)
+        .build());
+    byte[] content = new byte[objectSize];
+    new Random(1L).nextBytes(content);
+    s3.put(BUCKET, KEY, content);
+    s3Operations = S3OperationsImpl.Builder.configure()
+        .withS3(s3)
+        .withDownloadPartSize(partSize)
+        .withDownloadThreads(downloadThreads)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    s3Operations.close();
+    FileUtils.deleteDirectory(dir.toFile());
+  }
+
+  @Benchmark
+  public Path download() throws IOException {
+    Path target = dir.resolve(KEY);
+    Files.deleteIfExists(target);
+    s3Operations.download(BUCKET, KEY, target);
+    return target;
+  }
+}
@@ -0,0 +1,394 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import com.amazonaws.services.cloudformation.AbstractAmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AlreadyExistsException;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.CreateStackRequest;
+import com.amazonaws.services.cloudformation.model.CreateStackResult;
+import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DeleteStackResult;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
+import com.amazonaws.services.cloudformation.model.UpdateStackResult;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * In-process stand-in for CloudFormation. Stack operations take a configurable amount of wall-clock time during which
+ * the resources of the stack complete one after another, each publishing a stack event, so callers see the same
+ * status transitions and event stream as against the real service. Operations on stacks marked as failing fail at
+ * their first resource and roll back. Templates are not parsed, an update changes the stack when its template
+ * location, body, parameters or tags differ. Every request passes through {@link SimulatedFaults} first.
+ */
+public class InMemoryAmazonCloudFormation extends AbstractAmazonCloudFormation {
+
+  private static final String STACK_RESOURCE_TYPE = "AWS::CloudFormation::Stack";
+  private static final int EVENT_PAGE_SIZE = 100;
+
+  private enum Operation {
+    CREATE("CREATE_IN_PROGRESS", "CREATE_COMPLETE", "CREATE_FAILED", "ROLLBACK_IN_PROGRESS", "ROLLBACK_COMPLETE"),
+    UPDATE("UPDATE_IN_PROGRESS", "UPDATE_COMPLETE", "UPDATE_FAILED", "UPDATE_ROLLBACK_IN_PROGRESS", "UPDATE_ROLLBACK_COMPLETE"),
+    DELETE("DELETE_IN_PROGRESS", "DELETE_COMPLETE", "DELETE_FAILED", "DELETE_FAILED", "DELETE_FAILED");
+
+    private final String inProgress;
+    private final String complete;
+    private final String failed;
+    private final String rollbackInProgress;
+    private final String rollbackComplete;
+
+    Operation(String inProgress, String complete, String failed, String rollbackInProgress, String rollbackComplete) {
+      this.inProgress = inProgress;
+      this.complete = complete;
+      this.failed = failed;
+      this.rollbackInProgress = rollbackInProgress;
+      this.rollbackComplete = rollbackComplete;
+    }
+  }
+
+  private static final class SimulatedStack {
+
+    private final String name;
+    private final String id;
+    private final Date creationTime = new Date();
+    private final List<StackEvent> events = new ArrayList<>();
+    private Date lastUpdatedTime;
+    private Date deletionTime;
+    private String status;
+    private String template;
+    private Map<String, String> parameters = new TreeMap<>();
+    private Map<String, String> tags = new LinkedHashMap<>();
+    private Operation operation;
+    private boolean failing;
+    private long startedAt;
+    private int completedResources;
+
+    private SimulatedStack(String name) {
+      this.name = name;
+      this.id = String.format("arn:aws:cloudformation:us-east-1:123456789012:stack/%s/%s", name, UUID.randomUUID());
+    }
+  }
+
+  private final SimulatedFaults faults;
+  private final long operationMillis;
+  private final int resourcesPerStack;
+  private final Map<String, SimulatedStack> stacksByName = new HashMap<>();
+  private final Map<String, SimulatedStack> stacksById = new LinkedHashMap<>();
+  private final Set<String> failingStacks = new HashSet<>();
+  private final Map<String, Map<String, String>> outputs = new HashMap<>();
+
+  public InMemoryAmazonCloudFormation() {
+    this(SimulatedFaults.Builder.configure("AmazonCloudFormation").build(), 0L, 3);
+  }
+
+  /**
+   * @param faults latency, throttling and failures applied to every request
+   * @param operationMillis the time a create, update or delete takes to complete
+   * @param resourcesPerStack the number of simulated resources, each publishing events as it completes
+   */
+  public InMemoryAmazonCloudFormation(SimulatedFaults faults, long operationMillis, int resourcesPerStack) {
+    this.faults = faults;
+    this.operationMillis = operationMillis;
+    this.resourcesPerStack = resourcesPerStack;
+  }
+
+  /**
+   * Makes every following create or update of a stack fail and roll back
+   * @param stackName the name of the stack
+   */
+  public synchronized void failStack(String stackName) {
+    failingStacks.add(stackName);
+  }
+
+  /**
+   * Sets the outputs reported by a stack once an operation has completed
+   * @param stackName the name of the stack
+   * @param stackOutputs output values by output key
+   */
+  public synchronized void setOutputs(String stackName, Map<String, String> stackOutputs) {
+    outputs.put(stackName, new LinkedHashMap<>(stackOutputs));
+  }
+
+  @Override
+  public CreateStackResult createStack(CreateStackRequest request) {
+    faults.call("CreateStack");
+    synchronized (this) {
+      SimulatedStack existing = stacksByName.get(request.getStackName());
+      if (existing != null) {
+        advance(existing);
+        if (stacksByName.containsKey(request.getStackName())) {
+          throw new AlreadyExistsException("Stack [" + request.getStackName() + "] already exists");
+        }
+      }
+      SimulatedStack stack = new SimulatedStack(request.getStackName());
+      stack.template = request.getTemplateURL() != null ? request.getTemplateURL() : request.getTemplateBody();
+      stack.parameters = toMap(request.getParameters());
+      stack.tags = toTagMap(request.getTags());
+      stacksByName.put(stack.name, stack);
+      stacksById.put(stack.id, stack);
+      start(stack, Operation.CREATE);
+      CreateStackResult result = new CreateStackResult();
+      result.setStackId(stack.id);
+      return result;
+    }
+  }
+
+  @Override
+  public UpdateStackResult updateStack(UpdateStackRequest request) {
+    faults.call("UpdateStack");
+    synchronized (this) {
+      SimulatedStack stack = live(request.getStackName());
+      advance(stack);
+      if (stack.operation != null || !stack.status.endsWith("_COMPLETE") || stack.status.equals("ROLLBACK_COMPLETE")) {
+        throw validationError("Stack:" + stack.id + " is in " + stack.status + " state and can not be updated.");
+      }
+      String template = request.getTemplateURL() != null ? request.getTemplateURL() : request.getTemplateBody();
+      Map<String, String> parameters = toMap(request.getParameters());
+      Map<String, String> tags = request.getTags() == null || request.getTags().isEmpty() ? stack.tags : toTagMap(request.getTags());
+      if (template.equals(stack.template) && parameters.equals(stack.parameters) && tags.equals(stack.tags)) {
+        throw validationError("No updates are to be performed.");
+      }
+      stack.template = template;
+      stack.parameters = parameters;
+      stack.tags = tags;
+      stack.lastUpdatedTime = new Date();
+      start(stack, Operation.UPDATE);
+      UpdateStackResult result = new UpdateStackResult();
+      result.setStackId(stack.id);
+      return result;
+    }
+  }
+
+  @Override
+  public DeleteStackResult deleteStack(DeleteStackRequest request) {
+    faults.call("DeleteStack");
+    synchronized (this) {
+      SimulatedStack stack = stacksById.containsKey(request.getStackName())
+          ? stacksById.get(request.getStackName())
+          : stacksByName.get(request.getStackName());
+      if (stack != null) {
+        advance(stack);
+        if (stack.operation == null && !"DELETE_COMPLETE".equals(stack.status)) {
+          start(stack, Operation.DELETE);
+        }
+      }
+      return new DeleteStackResult();
+    }
+  }
+
+  @Override
+  public DescribeStacksResult describeStacks(DescribeStacksRequest request) {
+    faults.call("DescribeStacks");
+    synchronized (this) {
+      List<Stack> stacks = new ArrayList<>();
+      if (request.getStackName() == null) {
+        for (SimulatedStack stack : new ArrayList<>(stacksByName.values())) {
+          advance(stack);
+        }
+        for (SimulatedStack stack : stacksByName.values()) {
+          stacks.add(toStack(stack));
+        }
+      } else {
+        SimulatedStack stack = stacksById.get(request.getStackName());
+        if (stack == null) {
+          stack = live(request.getStackName());
+        }
+        advance(stack);
+        stacks.add(toStack(stack));
+      }
+      DescribeStacksResult result = new DescribeStacksResult();
+      result.setStacks(stacks);
+      return result;
+    }
+  }
+
+  @Override
+  public DescribeStackEventsResult describeStackEvents(DescribeStackEventsRequest request) {
+    faults.call("DescribeStackEvents");
+    synchronized (this) {
+      SimulatedStack stack = stacksById.get(request.getStackName());
+      if (stack == null) {
+        stack = live(request.getStackName());
+      }
+      advance(stack);
+      int start = request.getNextToken() == null ? 0 : Integer.parseInt(request.getNextToken());
+      List<StackEvent> page = new ArrayList<>(EVENT_PAGE_SIZE);
+      for (int i = stack.events.size() - 1 - start; i >= 0 && page.size() < EVENT_PAGE_SIZE; i--) {
+        page.add(stack.events.get(i));
+      }
+      DescribeStackEventsResult result = new DescribeStackEventsResult();
+      result.setStackEvents(page);
+      if (start + page.size() < stack.events.size()) {
+        result.setNextToken(String.valueOf(start + page.size()));
+      }
+      return result;
+    }
+  }
+
+  @Override
+  public ListStacksResult listStacks(ListStacksRequest request) {
+    faults.call("ListStacks");
+    synchronized (this) {
+      Collection<String> filters = request.getStackStatusFilters() == null ? Collections.emptyList() : request.getStackStatusFilters();
+      List<StackSummary> summaries = new ArrayList<>();
+      for (SimulatedStack stack : stacksById.values()) {
+        advance(stack);
+        if (filters.isEmpty() || filters.contains(stack.status)) {
+          StackSummary summary = new StackSummary();
+          summary.setStackName(stack.name);
+          summary.setStackId(stack.id);
+          summary.setStackStatus(stack.status);
+          summary.setCreationTime(stack.creationTime);
+          summary.setLastUpdatedTime(stack.lastUpdatedTime);
+          summary.setDeletionTime(stack.deletionTime);
+          summaries.add(summary);
+        }
+      }
+      ListStacksResult result = new ListStacksResult();
+      result.setStackSummaries(summaries);
+      return result;
+    }
+  }
+
+  @Override
+  public void shutdown() {
+
+  }
+
+  private SimulatedStack live(String stackName) {
+    SimulatedStack stack = stacksByName.get(stackName);
+    if (stack == null) {
+      throw validationError("Stack with id " + stackName + " does not exist");
+    }
+    return stack;
+  }
+
+  private void start(SimulatedStack stack, Operation operation) {
+    stack.operation = operation;
+    stack.failing = operation != Operation.DELETE && failingStacks.contains(stack.name);
+    stack.startedAt = System.currentTimeMillis();
+    stack.completedResources = 0;
+    stack.status = operation.inProgress;
+    event(stack, stack.name, STACK_RESOURCE_TYPE, stack.id, operation.inProgress, "User Initiated");
+  }
+
+  /**
+   * Publishes the events of every resource that has completed by now and completes the operation once the last
+   * resource is done
+   */
+  private void advance(SimulatedStack stack) {
+    if (stack.operation == null) {
+      return;
+    }
+    Operation operation = stack.operation;
+    long elapsed = System.currentTimeMillis() - stack.startedAt;
+    int due = operationMillis <= 0L ? resourcesPerStack : (int) Math.min(resourcesPerStack, elapsed * (resourcesPerStack + 1) / operationMillis);
+    while (stack.completedResources < due) {
+      String logicalId = "Resource" + (stack.completedResources + 1);
+      if (stack.failing) {
+        event(stack, logicalId, "AWS::S3::Bucket", logicalId, operation.failed, "Simulated failure");
+        event(stack, stack.name, STACK_RESOURCE_TYPE, stack.id, operation.rollbackInProgress, "The following resource(s) failed: [" + logicalId + "]");
+        event(stack, stack.name, STACK_RESOURCE_TYPE, stack.id, operation.rollbackComplete, null);
+        stack.status = operation.rollbackComplete;
+        stack.operation = null;
+        return;
+      }
+      event(stack, logicalId, "AWS::S3::Bucket", logicalId, operation.inProgress, null);
+      event(stack, logicalId, "AWS::S3::Bucket", logicalId, operation.complete, null);
+      stack.completedResources++;
+    }
+    if (elapsed >= operationMillis && stack.completedResources == resourcesPerStack) {
+      event(stack, stack.name, STACK_RESOURCE_TYPE, stack.id, operation.complete, null);
+      stack.status = operation.complete;
+      stack.operation = null;
+      if (operation == Operation.DELETE) {
+        stack.deletionTime = new Date();
+        stacksByName.remove(stack.name, stack);
+      }
+    }
+  }
+
+  private static void event(SimulatedStack stack, String logicalId, String resourceType, String physicalId, String status, String reason) {
+    StackEvent event = new StackEvent();
+    event.setStackName(stack.name);
+    event.setStackId(stack.id);
+    event.setEventId(UUID.randomUUID().toString());
+    event.setLogicalResourceId(logicalId);
+    event.setPhysicalResourceId(physicalId);
+    event.setResourceType(resourceType);
+    event.setResourceStatus(status);
+    event.setResourceStatusReason(reason);
+    event.setTimestamp(new Date());
+    stack.events.add(event);
+  }
+
+  private Stack toStack(SimulatedStack simulated) {
+    Stack stack = new Stack();
+    stack.setStackName(simulated.name);
+    stack.setStackId(simulated.id);
+    stack.setStackStatus(simulated.status);
+    stack.setCreationTime(simulated.creationTime);
+    stack.setLastUpdatedTime(simulated.lastUpdatedTime);
+    List<Parameter> parameters = new ArrayList<>();
+    simulated.parameters.forEach((key, value) -> parameters.add(new Parameter().withParameterKey(key).withParameterValue(value)));
+    stack.setParameters(parameters);
+    List<Tag> tags = new ArrayList<>();
+    simulated.tags.forEach((key, value) -> tags.add(new Tag().withKey(key).withValue(value)));
+    stack.setTags(tags);
+    List<Output> stackOutputs = new ArrayList<>();
+    if (simulated.status.endsWith("_COMPLETE") && !simulated.status.contains("ROLLBACK")) {
+      outputs.getOrDefault(simulated.name, Collections.emptyMap())
+          .forEach((key, value) -> stackOutputs.add(new Output().withOutputKey(key).withOutputValue(value)));
+    }
+    stack.setOutputs(stackOutputs);
+    return stack;
+  }
+
+  private static Map<String, String> toMap(List<Parameter> parameters) {
+    Map<String, String> map = new TreeMap<>();
+    if (parameters != null) {
+      for (Parameter parameter : parameters) {
+        map.put(parameter.getParameterKey(), parameter.getParameterValue());
+      }
+    }
+    return map;
+  }
+
+  private static Map<String, String> toTagMap(List<Tag> tags) {
+    Map<String, String> map = new LinkedHashMap<>();
+    if (tags != null) {
+      for (Tag tag : tags) {
+        map.put(tag.getKey(), tag.getValue());
+      }
+    }
+    return map;
+  }
+
+  private static AmazonCloudFormationException validationError(String message) {
+    AmazonCloudFormationException e = new AmazonCloudFormationException(message);
+    e.setErrorCode("ValidationError");
+    e.setStatusCode(400);
+    e.setServiceName("AmazonCloudFormation");
+    return e;
+  }
+}
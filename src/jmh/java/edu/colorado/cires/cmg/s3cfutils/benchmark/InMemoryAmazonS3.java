@@ -0,0 +1,499 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.DeleteObjectsResult.DeletedObject;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3VersionSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.services.s3.model.VersionListing;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * In-process stand-in for S3 holding every object in memory. Buckets are created on first write and are not
+ * versioned, every object has the version id "null". Only the requests made by this project and by the
+ * {@link com.amazonaws.services.s3.transfer.TransferManager} are supported. Every request passes through
+ * {@link SimulatedFaults} first.
+ */
+public class InMemoryAmazonS3 extends AbstractAmazonS3 {
+
+  private static final String NULL_VERSION = "null";
+  private static final int DEFAULT_MAX_KEYS = 1000;
+
+  private static final class StoredObject {
+
+    private final byte[] content;
+    private final ObjectMetadata metadata;
+
+    private StoredObject(byte[] content, ObjectMetadata metadata) {
+      this.content = content;
+      this.metadata = metadata;
+    }
+  }
+
+  private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+  private final Map<String, NavigableMap<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+  private final Map<String, ObjectMetadata> multipartMetadata = new ConcurrentHashMap<>();
+
+  private final SimulatedFaults faults;
+
+  public InMemoryAmazonS3() {
+    this(SimulatedFaults.Builder.configure("Amazon S3").build());
+  }
+
+  /**
+   * @param faults latency, throttling and failures applied to every request
+   */
+  public InMemoryAmazonS3(SimulatedFaults faults) {
+    this.faults = faults;
+  }
+
+  private NavigableMap<String, StoredObject> bucket(String bucketName) {
+    return buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+  }
+
+  private StoredObject object(String bucketName, String key) {
+    StoredObject object = bucket(bucketName).get(key);
+    if (object == null) {
+      AmazonS3Exception e = new AmazonS3Exception("The specified key does not exist.");
+      e.setStatusCode(404);
+      e.setErrorCode("NoSuchKey");
+      throw e;
+    }
+    return object;
+  }
+
+  private static AmazonS3Exception noSuchUpload(String uploadId) {
+    AmazonS3Exception e = new AmazonS3Exception("The specified upload does not exist: " + uploadId);
+    e.setStatusCode(404);
+    e.setErrorCode("NoSuchUpload");
+    return e;
+  }
+
+  /**
+   * Stores an object directly, bypassing the request path
+   * @param bucketName the bucket name
+   * @param key the object key
+   * @param content the object content
+   */
+  public void put(String bucketName, String key, byte[] content) {
+    store(bucketName, key, content, new ObjectMetadata());
+  }
+
+  /**
+   * @param bucketName the bucket name
+   * @return the number of objects in the bucket
+   */
+  public int size(String bucketName) {
+    return bucket(bucketName).size();
+  }
+
+  private String store(String bucketName, String key, byte[] content, ObjectMetadata requested) {
+    String eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(content));
+    store(bucketName, key, content, requested, eTag);
+    return eTag;
+  }
+
+  private void store(String bucketName, String key, byte[] content, ObjectMetadata requested, String eTag) {
+    ObjectMetadata metadata = requested == null ? new ObjectMetadata() : requested.clone();
+    metadata.setContentLength(content.length);
+    metadata.setHeader(Headers.ETAG, eTag);
+    metadata.setLastModified(new Date());
+    bucket(bucketName).put(key, new StoredObject(content, metadata));
+  }
+
+  @Override
+  public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request) {
+    faults.call("ListObjectsV2");
+    NavigableMap<String, StoredObject> bucket = bucket(request.getBucketName());
+    String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+    String after = request.getContinuationToken() != null ? request.getContinuationToken() : request.getStartAfter();
+    int maxKeys = request.getMaxKeys() == null ? DEFAULT_MAX_KEYS : request.getMaxKeys();
+
+    ListObjectsV2Result result = new ListObjectsV2Result();
+    result.setBucketName(request.getBucketName());
+    result.setPrefix(request.getPrefix());
+    result.setDelimiter(request.getDelimiter());
+    result.setContinuationToken(request.getContinuationToken());
+    result.setMaxKeys(maxKeys);
+    String delimiter = request.getDelimiter() == null || request.getDelimiter().isEmpty() ? null : request.getDelimiter();
+    Map.Entry<String, StoredObject> entry = after == null || after.compareTo(prefix) < 0 ? bucket.ceilingEntry(prefix) : bucket.higherEntry(after);
+    String lastKey = null;
+    int count = 0;
+    while (entry != null && entry.getKey().startsWith(prefix)) {
+      if (count == maxKeys) {
+        result.setTruncated(true);
+        result.setNextContinuationToken(lastKey);
+        break;
+      }
+      String key = entry.getKey();
+      int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+      if (index >= 0) {
+        // keys sharing a common prefix are rolled up, the token sorts after all of them
+        String commonPrefix = key.substring(0, index + delimiter.length());
+        result.getCommonPrefixes().add(commonPrefix);
+        lastKey = commonPrefix + Character.MAX_VALUE;
+      } else {
+        result.getObjectSummaries().add(summary(request.getBucketName(), key, entry.getValue()));
+        lastKey = key;
+      }
+      entry = bucket.higherEntry(lastKey);
+      count++;
+    }
+    result.setKeyCount(result.getObjectSummaries().size());
+    return result;
+  }
+
+  private static S3ObjectSummary summary(String bucketName, String key, StoredObject object) {
+    S3ObjectSummary summary = new S3ObjectSummary();
+    summary.setBucketName(bucketName);
+    summary.setKey(key);
+    summary.setSize(object.content.length);
+    summary.setETag(object.metadata.getETag());
+    summary.setLastModified(object.metadata.getLastModified());
+    return summary;
+  }
+
+  @Override
+  public BucketVersioningConfiguration getBucketVersioningConfiguration(String bucketName) {
+    faults.call("GetBucketVersioning");
+    return new BucketVersioningConfiguration(BucketVersioningConfiguration.OFF);
+  }
+
+  @Override
+  public VersionListing listVersions(ListVersionsRequest request) {
+    faults.call("ListObjectVersions");
+    return listVersions(request.getBucketName(), request.getPrefix(), request.getKeyMarker(),
+        request.getMaxResults() == null ? DEFAULT_MAX_KEYS : request.getMaxResults());
+  }
+
+  @Override
+  public VersionListing listNextBatchOfVersions(VersionListing previousVersionListing) {
+    faults.call("ListObjectVersions");
+    return listVersions(previousVersionListing.getBucketName(), previousVersionListing.getPrefix(),
+        previousVersionListing.getNextKeyMarker(), previousVersionListing.getMaxKeys());
+  }
+
+  private VersionListing listVersions(String bucketName, String prefix, String keyMarker, int maxKeys) {
+    NavigableMap<String, StoredObject> bucket = bucket(bucketName);
+    String effectivePrefix = prefix == null ? "" : prefix;
+    NavigableMap<String, StoredObject> candidates = keyMarker == null ? bucket.tailMap(effectivePrefix, true) : bucket.tailMap(keyMarker, false);
+
+    VersionListing listing = new VersionListing();
+    listing.setBucketName(bucketName);
+    listing.setPrefix(prefix);
+    listing.setKeyMarker(keyMarker);
+    listing.setMaxKeys(maxKeys);
+    List<S3VersionSummary> versions = new ArrayList<>();
+    String lastKey = null;
+    for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+      if (!entry.getKey().startsWith(effectivePrefix)) {
+        break;
+      }
+      if (versions.size() == maxKeys) {
+        listing.setTruncated(true);
+        listing.setNextKeyMarker(lastKey);
+        break;
+      }
+      S3VersionSummary version = new S3VersionSummary();
+      version.setBucketName(bucketName);
+      version.setKey(entry.getKey());
+      version.setVersionId(NULL_VERSION);
+      version.setIsLatest(true);
+      version.setSize(entry.getValue().content.length);
+      version.setETag(entry.getValue().metadata.getETag());
+      versions.add(version);
+      lastKey = entry.getKey();
+    }
+    listing.setVersionSummaries(versions);
+    return listing;
+  }
+
+  @Override
+  public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) {
+    faults.call("DeleteObjects");
+    NavigableMap<String, StoredObject> bucket = bucket(request.getBucketName());
+    List<DeletedObject> deleted = new ArrayList<>(request.getKeys().size());
+    for (KeyVersion keyVersion : request.getKeys()) {
+      bucket.remove(keyVersion.getKey());
+      if (!request.getQuiet()) {
+        DeletedObject deletedObject = new DeletedObject();
+        deletedObject.setKey(keyVersion.getKey());
+        deletedObject.setVersionId(keyVersion.getVersion());
+        deleted.add(deletedObject);
+      }
+    }
+    return new DeleteObjectsResult(deleted);
+  }
+
+  @Override
+  public void deleteObject(DeleteObjectRequest request) {
+    faults.call("DeleteObject");
+    bucket(request.getBucketName()).remove(request.getKey());
+  }
+
+  @Override
+  public void deleteObject(String bucketName, String key) {
+    deleteObject(new DeleteObjectRequest(bucketName, key));
+  }
+
+  @Override
+  public PutObjectResult putObject(PutObjectRequest request) {
+    faults.call("PutObject");
+    byte[] content;
+    try {
+      if (request.getFile() != null) {
+        content = Files.readAllBytes(request.getFile().toPath());
+      } else {
+        try (InputStream in = request.getInputStream()) {
+          content = IOUtils.toByteArray(in);
+        }
+      }
+    } catch (IOException e) {
+      throw new AmazonS3Exception("Unable to read request content", e);
+    }
+    PutObjectResult result = new PutObjectResult();
+    result.setETag(store(request.getBucketName(), request.getKey(), content, request.getMetadata()));
+    return result;
+  }
+
+  @Override
+  public PutObjectResult putObject(String bucketName, String key, InputStream input, ObjectMetadata metadata) {
+    return putObject(new PutObjectRequest(bucketName, key, input, metadata));
+  }
+
+  @Override
+  public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+    faults.call("HeadObject");
+    return object(request.getBucketName(), request.getKey()).metadata.clone();
+  }
+
+  @Override
+  public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+    return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+  }
+
+  @Override
+  public boolean doesObjectExist(String bucketName, String objectName) {
+    faults.call("HeadObject");
+    return bucket(bucketName).containsKey(objectName);
+  }
+
+  @Override
+  public S3Object getObject(GetObjectRequest request) {
+    faults.call("GetObject");
+    StoredObject stored = object(request.getBucketName(), request.getKey());
+    if (!request.getMatchingETagConstraints().isEmpty() && !request.getMatchingETagConstraints().contains(stored.metadata.getETag())) {
+      // the client returns null when a precondition fails
+      return null;
+    }
+    int start = 0;
+    int end = stored.content.length - 1;
+    long[] range = request.getRange();
+    if (range != null) {
+      start = (int) Math.min(range[0], stored.content.length);
+      if (range.length > 1) {
+        end = (int) Math.min(range[1], stored.content.length - 1L);
+      }
+    }
+    int length = Math.max(0, end - start + 1);
+    ObjectMetadata metadata = stored.metadata.clone();
+    metadata.setContentLength(length);
+    if (range != null) {
+      metadata.setHeader(Headers.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, stored.content.length));
+    }
+    S3Object object = new S3Object();
+    object.setBucketName(request.getBucketName());
+    object.setKey(request.getKey());
+    object.setObjectMetadata(metadata);
+    object.setObjectContent(new ByteArrayInputStream(stored.content, start, length));
+    return object;
+  }
+
+  @Override
+  public S3Object getObject(String bucketName, String key) {
+    return getObject(new GetObjectRequest(bucketName, key));
+  }
+
+  @Override
+  public CopyObjectResult copyObject(CopyObjectRequest request) {
+    faults.call("CopyObject");
+    StoredObject source = object(request.getSourceBucketName(), request.getSourceKey());
+    ObjectMetadata metadata = request.getNewObjectMetadata() == null ? source.metadata : request.getNewObjectMetadata();
+    store(request.getDestinationBucketName(), request.getDestinationKey(), source.content, metadata, source.metadata.getETag());
+    CopyObjectResult result = new CopyObjectResult();
+    result.setETag(source.metadata.getETag());
+    result.setLastModifiedDate(new Date());
+    return result;
+  }
+
+  @Override
+  public CopyObjectResult copyObject(String sourceBucketName, String sourceKey, String destinationBucketName, String destinationKey) {
+    return copyObject(new CopyObjectRequest(sourceBucketName, sourceKey, destinationBucketName, destinationKey));
+  }
+
+  @Override
+  public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+    faults.call("CreateMultipartUpload");
+    String uploadId = UUID.randomUUID().toString();
+    multipartUploads.put(uploadId, new ConcurrentSkipListMap<>());
+    multipartMetadata.put(uploadId, request.getObjectMetadata() == null ? new ObjectMetadata() : request.getObjectMetadata());
+    InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+    result.setBucketName(request.getBucketName());
+    result.setKey(request.getKey());
+    result.setUploadId(uploadId);
+    return result;
+  }
+
+  @Override
+  public UploadPartResult uploadPart(UploadPartRequest request) {
+    faults.call("UploadPart");
+    NavigableMap<Integer, byte[]> parts = multipartUploads.get(request.getUploadId());
+    if (parts == null) {
+      throw noSuchUpload(request.getUploadId());
+    }
+    byte[] part = new byte[(int) request.getPartSize()];
+    try {
+      if (request.getFile() != null) {
+        try (RandomAccessFile file = new RandomAccessFile(request.getFile(), "r")) {
+          file.seek(request.getFileOffset());
+          file.readFully(part);
+        }
+      } else {
+        IOUtils.readFully(request.getInputStream(), part);
+      }
+    } catch (IOException e) {
+      throw new AmazonS3Exception("Unable to read part content", e);
+    }
+    parts.put(request.getPartNumber(), part);
+    UploadPartResult result = new UploadPartResult();
+    result.setPartNumber(request.getPartNumber());
+    result.setETag(BinaryUtils.toHex(Md5Utils.computeMD5Hash(part)));
+    return result;
+  }
+
+  @Override
+  public CopyPartResult copyPart(CopyPartRequest request) {
+    faults.call("UploadPartCopy");
+    NavigableMap<Integer, byte[]> parts = multipartUploads.get(request.getUploadId());
+    if (parts == null) {
+      throw noSuchUpload(request.getUploadId());
+    }
+    byte[] content = object(request.getSourceBucketName(), request.getSourceKey()).content;
+    int first = request.getFirstByte() == null ? 0 : request.getFirstByte().intValue();
+    int last = request.getLastByte() == null ? content.length - 1 : request.getLastByte().intValue();
+    byte[] part = Arrays.copyOfRange(content, first, last + 1);
+    parts.put(request.getPartNumber(), part);
+    CopyPartResult result = new CopyPartResult();
+    result.setPartNumber(request.getPartNumber());
+    result.setETag(BinaryUtils.toHex(Md5Utils.computeMD5Hash(part)));
+    return result;
+  }
+
+  @Override
+  public PartListing listParts(ListPartsRequest request) {
+    faults.call("ListParts");
+    NavigableMap<Integer, byte[]> parts = multipartUploads.get(request.getUploadId());
+    if (parts == null) {
+      throw noSuchUpload(request.getUploadId());
+    }
+    PartListing listing = new PartListing();
+    listing.setBucketName(request.getBucketName());
+    listing.setKey(request.getKey());
+    listing.setUploadId(request.getUploadId());
+    List<PartSummary> summaries = new ArrayList<>();
+    for (Map.Entry<Integer, byte[]> part : parts.entrySet()) {
+      PartSummary summary = new PartSummary();
+      summary.setPartNumber(part.getKey());
+      summary.setSize(part.getValue().length);
+      summary.setETag(BinaryUtils.toHex(Md5Utils.computeMD5Hash(part.getValue())));
+      summaries.add(summary);
+    }
+    listing.setParts(summaries);
+    listing.setTruncated(false);
+    return listing;
+  }
+
+  @Override
+  public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+    faults.call("CompleteMultipartUpload");
+    NavigableMap<Integer, byte[]> parts = multipartUploads.remove(request.getUploadId());
+    ObjectMetadata metadata = multipartMetadata.remove(request.getUploadId());
+    if (parts == null) {
+      throw noSuchUpload(request.getUploadId());
+    }
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    ByteArrayOutputStream partDigests = new ByteArrayOutputStream();
+    for (PartETag partETag : request.getPartETags()) {
+      byte[] part = parts.get(partETag.getPartNumber());
+      content.write(part, 0, part.length);
+      byte[] digest = Md5Utils.computeMD5Hash(part);
+      partDigests.write(digest, 0, digest.length);
+    }
+    String eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(partDigests.toByteArray())) + "-" + request.getPartETags().size();
+    store(request.getBucketName(), request.getKey(), content.toByteArray(), metadata, eTag);
+    CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+    result.setBucketName(request.getBucketName());
+    result.setKey(request.getKey());
+    result.setETag(eTag);
+    return result;
+  }
+
+  @Override
+  public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+    faults.call("AbortMultipartUpload");
+    multipartUploads.remove(request.getUploadId());
+    multipartMetadata.remove(request.getUploadId());
+  }
+
+  @Override
+  public void shutdown() {
+
+  }
+}
@@ -0,0 +1,75 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.colorado.cires.cmg.s3cfutils.framework.ObjectMapperCreator;
+import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stack parameter parsing and Double serialization with the {@link ObjectMapper} from {@link ObjectMapperCreator}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+  private static final TypeReference<List<ParameterKeyValue>> PARAMETERS = new TypeReference<List<ParameterKeyValue>>() {
+  };
+
+  @Param({"10", "200"})
+  public int valueCount;
+
+  private ObjectMapper objectMapper;
+  private String parametersJson;
+  private Map<String, Double> doubles;
+
+  @Setup(Level.Trial)
+  public void setUp() throws JsonProcessingException {
+    objectMapper = ObjectMapperCreator.create();
+    List<ParameterKeyValue> parameters = new ArrayList<>(valueCount);
+    Random random = new Random(1L);
+    doubles = new LinkedHashMap<>();
+    for (int i = 0; i < valueCount; i++) {
+      parameters.add(new ParameterKeyValue("Parameter" + i, "value-" + random.nextInt()));
+      doubles.put("value" + i, random.nextDouble() * Math.pow(10, random.nextInt(12) - 6));
+    }
+    parametersJson = objectMapper.writeValueAsString(parameters);
+  }
+
+  @Benchmark
+  public List<ParameterKeyValue> parseParameters() throws JsonProcessingException {
+    return objectMapper.readValue(parametersJson, PARAMETERS);
+  }
+
+  @Benchmark
+  public String serializeDoubles() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(doubles);
+  }
+
+  @Benchmark
+  public ObjectMapper createObjectMapper() {
+    return ObjectMapperCreator.create();
+  }
+}
@@ -0,0 +1,77 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import edu.colorado.cires.cmg.s3cfutils.framework.ObjectSummary;
+import edu.colorado.cires.cmg.s3cfutils.framework.S3OperationsImpl;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sequential and partitioned listing of a bucket whose keys are spread over several top-level partitions, against
+ * {@link InMemoryAmazonS3} with per call latency so the single continuation token chain of a sequential listing shows
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PartitionedListingBenchmark {
+
+  private static final String BUCKET = "benchmark-bucket";
+
+  @Param({"20000"})
+  public int objectCount;
+
+  @Param({"16"})
+  public int partitionCount;
+
+  @Param({"0", "20"})
+  public long callLatencyMillis;
+
+  private S3OperationsImpl s3Operations;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    InMemoryAmazonS3 s3 = new InMemoryAmazonS3(SimulatedFaults.Builder.configure("Amazon S3")
+        .withCallLatencyMillis(callLatencyMillis)
+        .build());
+    byte[] content = new byte[128];
+    for (int i = 0; i < objectCount; i++) {
+      s3.put(BUCKET, String.format("archive-%03d/object-%08d.dat", i % partitionCount, i), content);
+    }
+    s3Operations = new S3OperationsImpl(s3);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    s3Operations.close();
+  }
+
+  @Benchmark
+  public List<ObjectSummary> sequential() {
+    return s3Operations.listObjectSummaries(BUCKET, null);
+  }
+
+  @Benchmark
+  public List<ObjectSummary> partitionedOrdered() {
+    return s3Operations.listObjectSummariesPartitioned(BUCKET, null, true);
+  }
+
+  @Benchmark
+  public List<ObjectSummary> partitionedUnordered() {
+    return s3Operations.listObjectSummariesPartitioned(BUCKET, null, false);
+  }
+}
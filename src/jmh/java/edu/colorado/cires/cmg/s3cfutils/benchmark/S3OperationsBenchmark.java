@@ -0,0 +1,81 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import edu.colorado.cires.cmg.s3cfutils.framework.DeleteResult;
+import edu.colorado.cires.cmg.s3cfutils.framework.S3OperationsImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Listing and batch deletes of {@link S3OperationsImpl} against {@link InMemoryAmazonS3}, measuring the client side
+ * cost of paging, summary conversion and batching without network time
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class S3OperationsBenchmark {
+
+  private static final String BUCKET = "benchmark-bucket";
+
+  @Param({"1000", "10000"})
+  public int objectCount;
+
+  private InMemoryAmazonS3 s3;
+  private S3OperationsImpl s3Operations;
+  private List<String> keys;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    s3 = new InMemoryAmazonS3();
+    s3Operations = new S3OperationsImpl(s3);
+    keys = new ArrayList<>(objectCount);
+    for (int i = 0; i < objectCount; i++) {
+      keys.add(String.format("stack/nested-%06d.yaml", i));
+    }
+    fill();
+  }
+
+  /**
+   * Puts back the objects deleted by the previous invocation so every delete starts from a full bucket
+   */
+  @Setup(Level.Invocation)
+  public void fill() {
+    if (s3.size(BUCKET) != objectCount) {
+      byte[] content = new byte[128];
+      for (String key : keys) {
+        s3.put(BUCKET, key, content);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    s3Operations.close();
+  }
+
+  @Benchmark
+  public List<String> listObjects() {
+    return s3Operations.listObjects(BUCKET, "stack/");
+  }
+
+  @Benchmark
+  public DeleteResult deleteObjects() {
+    return s3Operations.deleteObjectsWithResult(BUCKET, keys);
+  }
+}
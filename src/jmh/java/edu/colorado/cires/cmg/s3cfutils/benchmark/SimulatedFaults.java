@@ -0,0 +1,197 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, throttling and failures applied to every call of a simulated AWS service. A throttled attempt is retried
+ * with exponential backoff the way the SDK client retries it, so throttling shows up as added latency until the
+ * retries are exhausted. Random decisions come from a seeded generator so a run can be repeated.
+ */
+public class SimulatedFaults {
+
+  private final String serviceName;
+  private final long callLatencyMillis;
+  private final double throttleRate;
+  private final double failureRate;
+  private final int maxRetries;
+  private final long retryBaseDelayMillis;
+  private final Random random;
+  private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+  private final AtomicLong throttledAttempts = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+
+  private SimulatedFaults(Builder builder) {
+    serviceName = builder.serviceName;
+    callLatencyMillis = builder.callLatencyMillis;
+    throttleRate = builder.throttleRate;
+    failureRate = builder.failureRate;
+    maxRetries = builder.maxRetries;
+    retryBaseDelayMillis = builder.retryBaseDelayMillis;
+    random = new Random(builder.seed);
+  }
+
+  /**
+   * Applies latency, throttling and failures to one call
+   * @param operation the name of the API operation
+   * @throws AmazonServiceException when the call is throttled more often than it is retried or an injected failure
+   * occurs
+   */
+  public void call(String operation) {
+    calls.computeIfAbsent(operation, key -> new AtomicLong()).incrementAndGet();
+    for (int attempt = 0; ; attempt++) {
+      sleep(callLatencyMillis);
+      if (nextDouble() < throttleRate) {
+        throttledAttempts.incrementAndGet();
+        if (attempt == maxRetries) {
+          throw exception(operation, "Throttling", 400, "Rate exceeded");
+        }
+        sleep(retryBaseDelayMillis << attempt);
+        continue;
+      }
+      if (nextDouble() < failureRate) {
+        failures.incrementAndGet();
+        throw exception(operation, "InjectedFailure", 500, "Injected failure");
+      }
+      return;
+    }
+  }
+
+  private synchronized double nextDouble() {
+    return random.nextDouble();
+  }
+
+  private AmazonServiceException exception(String operation, String errorCode, int statusCode, String message) {
+    AmazonServiceException e = new AmazonServiceException(message + ": " + operation);
+    e.setServiceName(serviceName);
+    e.setErrorCode(errorCode);
+    e.setStatusCode(statusCode);
+    e.setErrorType(statusCode >= 500 ? ErrorType.Service : ErrorType.Client);
+    return e;
+  }
+
+  private static void sleep(long millis) {
+    if (millis > 0L) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted during simulated latency", e);
+      }
+    }
+  }
+
+  /**
+   * @return the number of calls by operation name
+   */
+  public Map<String, Long> getCalls() {
+    Map<String, Long> counts = new TreeMap<>();
+    calls.forEach((operation, count) -> counts.put(operation, count.get()));
+    return counts;
+  }
+
+  /**
+   * @return the number of attempts that were throttled, including attempts that were retried
+   */
+  public long getThrottledAttempts() {
+    return throttledAttempts.get();
+  }
+
+  /**
+   * @return the number of injected failures
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  @Override
+  public String toString() {
+    return serviceName + " calls=" + getCalls() + " throttledAttempts=" + getThrottledAttempts() + " failures=" + getFailures();
+  }
+
+  public static class Builder {
+
+    private final String serviceName;
+    private long callLatencyMillis;
+    private double throttleRate;
+    private double failureRate;
+    private int maxRetries = 3;
+    private long retryBaseDelayMillis = 100L;
+    private long seed = 1L;
+
+    /**
+     * @param serviceName the service name reported in injected exceptions
+     * @return a builder without latency, throttling or failures
+     */
+    public static Builder configure(String serviceName) {
+      return new Builder(serviceName);
+    }
+
+    private Builder(String serviceName) {
+      this.serviceName = serviceName;
+    }
+
+    /**
+     * @param callLatencyMillis the latency of every call attempt
+     * @return this builder
+     */
+    public Builder withCallLatencyMillis(long callLatencyMillis) {
+      this.callLatencyMillis = callLatencyMillis;
+      return this;
+    }
+
+    /**
+     * @param throttleRate the probability between 0 and 1 that an attempt is throttled
+     * @return this builder
+     */
+    public Builder withThrottleRate(double throttleRate) {
+      this.throttleRate = throttleRate;
+      return this;
+    }
+
+    /**
+     * @param failureRate the probability between 0 and 1 that a call fails without being retried
+     * @return this builder
+     */
+    public Builder withFailureRate(double failureRate) {
+      this.failureRate = failureRate;
+      return this;
+    }
+
+    /**
+     * @param maxRetries the number of times a throttled call is retried before the throttling error is thrown
+     * @return this builder
+     */
+    public Builder withMaxRetries(int maxRetries) {
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * @param retryBaseDelayMillis the delay before the first retry, doubled for every following retry
+     * @return this builder
+     */
+    public Builder withRetryBaseDelayMillis(long retryBaseDelayMillis) {
+      this.retryBaseDelayMillis = retryBaseDelayMillis;
+      return this;
+    }
+
+    /**
+     * @param seed the seed of throttling and failure decisions
+     * @return this builder
+     */
+    public Builder withSeed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public SimulatedFaults build() {
+      return new SimulatedFaults(this);
+    }
+  }
+}
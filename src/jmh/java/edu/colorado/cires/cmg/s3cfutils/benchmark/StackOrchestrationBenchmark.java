@@ -0,0 +1,165 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperationsImpl;
+import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import edu.colorado.cires.cmg.s3cfutils.framework.S3OperationsImpl;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackWaitPolicy;
+import edu.colorado.cires.cmg.s3cfutils.operations.DeleteStack;
+import edu.colorado.cires.cmg.s3cfutils.operations.OperationUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * End to end stack orchestration against {@link InMemoryAmazonS3} and {@link InMemoryAmazonCloudFormation}: bundle
+ * sync, stack creation, updates, the unchanged bundle skip and teardown, with per call latency and throttling injected
+ * into both services. The number of calls made and throttled is logged after each trial.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StackOrchestrationBenchmark {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StackOrchestrationBenchmark.class);
+
+  private static final String CF_PREFIX = "benchmark-cf";
+  private static final String VERSION = "1.0.0";
+  private static final String APPLICATION_STACK_FILE_NAME = "nested-00000.yaml";
+
+  @Param({"0", "20"})
+  public long callLatencyMillis;
+
+  @Param({"0.0", "0.1"})
+  public double throttleRate;
+
+  @Param({"50"})
+  public int fileCount;
+
+  @Param({"200"})
+  public long stackOperationMillis;
+
+  private final AtomicLong ids = new AtomicLong();
+  private Path cfBaseDir;
+  private SimulatedFaults s3Faults;
+  private SimulatedFaults cfFaults;
+  private S3OperationsImpl s3Operations;
+  private CloudFormationOperationsImpl cfOperations;
+  private StackContext deployedContext;
+  private boolean alternate;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    cfBaseDir = Files.createTempDirectory("orchestration-benchmark");
+    Path targetDir = cfBaseDir.resolve("target");
+    Files.createDirectories(targetDir);
+    String name = String.format("%s-%s", CF_PREFIX, VERSION);
+    SyntheticBundles.writeZip(targetDir.resolve(name + ".zip"), name, fileCount, 4096, 1L);
+
+    s3Faults = faults("Amazon S3");
+    cfFaults = faults("AmazonCloudFormation");
+    s3Operations = new S3OperationsImpl(new InMemoryAmazonS3(s3Faults));
+    cfOperations = new CloudFormationOperationsImpl(
+        new InMemoryAmazonCloudFormation(cfFaults, stackOperationMillis, 5),
+        StackWaitPolicy.Builder.configure()
+            .withMinDelay(Duration.ofMillis(10))
+            .withMaxDelay(Duration.ofMillis(100))
+            .withTimeout(Duration.ofMinutes(5))
+            .build());
+
+    deployedContext = nextContext();
+    deploy(deployedContext, parameters("a"));
+  }
+
+  private SimulatedFaults faults(String serviceName) {
+    return SimulatedFaults.Builder.configure(serviceName)
+        .withCallLatencyMillis(callLatencyMillis)
+        .withThrottleRate(throttleRate)
+        .withRetryBaseDelayMillis(50L)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    new DeleteStack(cfOperations, s3Operations).run(deployedContext, false);
+    s3Operations.close();
+    LOGGER.info("{}", s3Faults);
+    LOGGER.info("{}", cfFaults);
+    FileUtils.deleteDirectory(cfBaseDir.toFile());
+  }
+
+  private StackContext nextContext() {
+    return StackContext.Builder.configureTest(String.format("test-%08d", ids.incrementAndGet())).build();
+  }
+
+  private static List<ParameterKeyValue> parameters(String value) {
+    return Collections.singletonList(new ParameterKeyValue("BenchmarkValue", value));
+  }
+
+  private void deploy(StackContext stackContext, List<ParameterKeyValue> stackParameters) {
+    OperationUtils.createOrUpdateStack(
+        cfOperations,
+        s3Operations,
+        stackContext,
+        cfBaseDir.toString(),
+        VERSION,
+        Collections.emptyList(),
+        stackParameters,
+        CF_PREFIX,
+        APPLICATION_STACK_FILE_NAME);
+  }
+
+  /**
+   * Creates the deployment and application stacks of a new context and tears them down again
+   */
+  @Benchmark
+  public StackContext createAndDelete() {
+    StackContext stackContext = nextContext();
+    deploy(stackContext, parameters("a"));
+    new DeleteStack(cfOperations, s3Operations).run(stackContext, false);
+    return stackContext;
+  }
+
+  /**
+   * Redeploys an unchanged bundle, which only describes the stacks
+   */
+  @Benchmark
+  public StackContext updateUnchanged() {
+    deploy(deployedContext, parameters(alternate ? "b" : "a"));
+    return deployedContext;
+  }
+
+  /**
+   * Redeploys with a changed parameter, which syncs the bundle and updates the application stack
+   */
+  @Benchmark
+  public StackContext updateChanged() {
+    alternate = !alternate;
+    deploy(deployedContext, parameters(alternate ? "b" : "a"));
+    return deployedContext;
+  }
+}
@@ -0,0 +1,68 @@
+package edu.colorado.cires.cmg.s3cfutils.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates CloudFormation template bundles laid out like the bundles built by the maven assembly: a root directory
+ * named after the bundle containing deploy/deployment-stack.yaml and stack templates. Content is pseudo random but
+ * deterministic so repeated runs compare the same bytes.
+ */
+public final class SyntheticBundles {
+
+  /**
+   * Writes a bundle zip
+   * @param zip the zip file to write
+   * @param name the name of the root directory within the zip
+   * @param fileCount the number of stack templates
+   * @param fileSize the size in bytes of each stack template
+   * @param seed the seed of the template content, a different seed changes every template
+   */
+  public static void writeZip(Path zip, String name, int fileCount, int fileSize, long seed) throws IOException {
+    Random random = new Random(seed);
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+      out.putNextEntry(new ZipEntry(name + "/deploy/deployment-stack.yaml"));
+      out.write(deploymentTemplate().getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+      for (int i = 0; i < fileCount; i++) {
+        out.putNextEntry(new ZipEntry(String.format("%s/stack/nested-%05d.yaml", name, i)));
+        writeTemplate(out, random, fileSize);
+        out.closeEntry();
+      }
+    }
+  }
+
+  /**
+   * Writes template like text, mostly printable ASCII so it compresses like real templates do
+   */
+  private static void writeTemplate(OutputStream out, Random random, int size) throws IOException {
+    byte[] line = new byte[80];
+    int written = 0;
+    while (written < size) {
+      int length = Math.min(line.length, size - written);
+      for (int i = 0; i < length - 1; i++) {
+        line[i] = (byte) ('a' + random.nextInt(26));
+      }
+      line[length - 1] = '\n';
+      out.write(line, 0, length);
+      written += length;
+    }
+  }
+
+  private static String deploymentTemplate() {
+    return "AWSTemplateFormatVersion: '2010-09-09'\n"
+        + "Resources:\n"
+        + "  DeploymentBucket:\n"
+        + "    Type: AWS::S3::Bucket\n";
+  }
+
+  private SyntheticBundles() {
+
+  }
+}
@@ -0,0 +1,74 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports every request made by an AWS client, with the number of attempts it took, to {@link OperationMetrics}.
+ * Register it when building a client:
+ * <pre>
+ * AmazonS3ClientBuilder.standard().withRequestHandlers(new ApiCallMetricsHandler(metrics)).build();
+ * </pre>
+ */
+public class ApiCallMetricsHandler extends RequestHandler2 {
+
+  private static final HandlerContextKey<Long> START_NANOS = new HandlerContextKey<>("ApiCallMetricsStartNanos");
+  private static final HandlerContextKey<AtomicInteger> ATTEMPTS = new HandlerContextKey<>("ApiCallMetricsAttempts");
+
+  private final OperationMetrics metrics;
+
+  public ApiCallMetricsHandler(OperationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void beforeRequest(Request<?> request) {
+    request.addHandlerContext(START_NANOS, System.nanoTime());
+    request.addHandlerContext(ATTEMPTS, new AtomicInteger());
+  }
+
+  @Override
+  public void beforeAttempt(HandlerBeforeAttemptContext context) {
+    AtomicInteger attempts = context.getRequest().getHandlerContext(ATTEMPTS);
+    if (attempts != null) {
+      attempts.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void afterResponse(Request<?> request, Response<?> response) {
+    report(request, true);
+  }
+
+  @Override
+  public void afterError(Request<?> request, Response<?> response, Exception e) {
+    report(request, false);
+  }
+
+  private void report(Request<?> request, boolean succeeded) {
+    Long startNanos = request.getHandlerContext(START_NANOS);
+    AtomicInteger attempts = request.getHandlerContext(ATTEMPTS);
+    if (startNanos == null || attempts == null) {
+      return;
+    }
+    metrics.apiCallCompleted(
+        request.getServiceName(),
+        operationName(request.getOriginalRequest()),
+        Math.max(1, attempts.get()),
+        (System.nanoTime() - startNanos) / 1_000_000L,
+        succeeded);
+  }
+
+  private static String operationName(AmazonWebServiceRequest request) {
+    if (request == null) {
+      return "Unknown";
+    }
+    String name = request.getClass().getSimpleName();
+    return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+  }
+}
@@ -0,0 +1,258 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3VersionSummary;
+import com.amazonaws.services.s3.model.VersionListing;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Empties a bucket of every object version and delete marker. A single producer pages through the version listing and
+ * feeds batches of at most {@value S3OperationsImpl#MAX_DELETE_BATCH_SIZE} keys into a bounded queue which is drained by
+ * several delete workers, so deleting starts with the first page and runs at the rate S3 allows. A bucket that has never
+ * been versioned only holds current objects, its plain key listing is used instead of the version listing.
+ */
+class BucketEmptier {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BucketEmptier.class);
+
+  /**
+   * Bucket listings are repeated until one is empty, this bounds the number of passes when deletes keep failing
+   */
+  private static final int MAX_PASSES = 10;
+
+  private static final List<KeyVersion> END = new ArrayList<>(0);
+
+  private final AmazonS3 s3;
+  private final BiFunction<String, List<KeyVersion>, DeleteResult> deleter;
+  private final int workers;
+  private final ThreadFactory threadFactory;
+  private final long progressIntervalMillis;
+
+  /**
+   * @param s3 the {@link AmazonS3} client used for listing
+   * @param deleter sends a single delete request for at most {@value S3OperationsImpl#MAX_DELETE_BATCH_SIZE} keys
+   * @param workers the number of concurrent delete workers
+   * @param threadFactory creates the delete worker threads
+   * @param progressIntervalMillis the minimum time between progress reports
+   */
+  BucketEmptier(AmazonS3 s3, BiFunction<String, List<KeyVersion>, DeleteResult> deleter, int workers, ThreadFactory threadFactory,
+      long progressIntervalMillis) {
+    this.s3 = s3;
+    this.deleter = deleter;
+    this.workers = workers;
+    this.threadFactory = threadFactory;
+    this.progressIntervalMillis = progressIntervalMillis;
+  }
+
+  /**
+   * Deletes all object versions and delete markers, repeating the listing until the bucket is empty or a pass deletes
+   * nothing
+   * @param bucket the bucket name
+   * @param progressListener receives periodic {@link EmptyBucketStatus} reports
+   * @return the final {@link EmptyBucketStatus}
+   */
+  EmptyBucketStatus empty(String bucket, Consumer<EmptyBucketStatus> progressListener) {
+    Progress progress = new Progress(bucket, progressListener);
+    boolean versioned = hasBeenVersioned(bucket);
+    for (int pass = 0; pass < MAX_PASSES; pass++) {
+      long deletedBefore = progress.deleted.get();
+      long listed = runPass(bucket, versioned, progress);
+      if (listed == 0 || progress.deleted.get() == deletedBefore) {
+        break;
+      }
+    }
+    EmptyBucketStatus status = progress.snapshot(true);
+    progressListener.accept(status);
+    return status;
+  }
+
+  /**
+   * @return false only if the versioning of the bucket is Off, which it cannot return to once enabled
+   */
+  private boolean hasBeenVersioned(String bucket) {
+    try {
+      return !BucketVersioningConfiguration.OFF.equals(s3.getBucketVersioningConfiguration(bucket).getStatus());
+    } catch (AmazonServiceException e) {
+      if (e.getStatusCode() != 403) {
+        throw e;
+      }
+      LOGGER.debug("Unable to read versioning of bucket '{}', listing versions", bucket, e);
+      return true;
+    }
+  }
+
+  /**
+   * Lists every version, or every key of a bucket that has never been versioned, once, queueing batches for the delete
+   * workers
+   * @param bucket the bucket name
+   * @param versioned true to list versions and delete markers
+   * @param progress shared progress counters
+   * @return the number of versions listed in this pass
+   */
+  private long runPass(String bucket, boolean versioned, Progress progress) {
+    BlockingQueue<List<KeyVersion>> queue = new ArrayBlockingQueue<>(workers * 2);
+    ConcurrentLinkedQueue<DeleteResult.Failure> failures = new ConcurrentLinkedQueue<>();
+    progress.startPass(failures);
+
+    ExecutorService pool = Executors.newFixedThreadPool(workers, threadFactory);
+    try {
+      List<Future<?>> futures = new ArrayList<>(workers);
+      for (int i = 0; i < workers; i++) {
+        futures.add(pool.submit(() -> drain(bucket, queue, failures, progress)));
+      }
+
+      // pages hold at most one delete batch, each page is queued as a batch
+      long listed = versioned ? queueVersions(bucket, queue, progress) : queueKeys(bucket, queue, progress);
+      for (int i = 0; i < workers; i++) {
+        queue.put(END);
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      return listed;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Unable to empty bucket: " + bucket, e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Unable to empty bucket: " + bucket, e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private long queueVersions(String bucket, BlockingQueue<List<KeyVersion>> queue, Progress progress) throws InterruptedException {
+    long listed = 0L;
+    VersionListing listing = s3.listVersions(new ListVersionsRequest()
+        .withBucketName(bucket)
+        .withMaxResults(S3OperationsImpl.MAX_DELETE_BATCH_SIZE));
+    while (true) {
+      List<KeyVersion> batch = new ArrayList<>(listing.getVersionSummaries().size());
+      for (S3VersionSummary version : listing.getVersionSummaries()) {
+        batch.add(new KeyVersion(version.getKey(), version.getVersionId()));
+      }
+      listed += queue(batch, queue, progress);
+      if (!listing.isTruncated()) {
+        return listed;
+      }
+      listing = s3.listNextBatchOfVersions(listing);
+    }
+  }
+
+  private long queueKeys(String bucket, BlockingQueue<List<KeyVersion>> queue, Progress progress) throws InterruptedException {
+    long listed = 0L;
+    ListObjectsV2Request request = new ListObjectsV2Request()
+        .withBucketName(bucket)
+        .withMaxKeys(S3OperationsImpl.MAX_DELETE_BATCH_SIZE);
+    while (true) {
+      ListObjectsV2Result result = s3.listObjectsV2(request);
+      List<KeyVersion> batch = new ArrayList<>(result.getObjectSummaries().size());
+      for (S3ObjectSummary summary : result.getObjectSummaries()) {
+        batch.add(new KeyVersion(summary.getKey()));
+      }
+      listed += queue(batch, queue, progress);
+      if (!result.isTruncated()) {
+        return listed;
+      }
+      request.setContinuationToken(result.getNextContinuationToken());
+    }
+  }
+
+  private static int queue(List<KeyVersion> batch, BlockingQueue<List<KeyVersion>> queue, Progress progress) throws InterruptedException {
+    if (!batch.isEmpty()) {
+      queue.put(batch);
+    }
+    progress.listed.addAndGet(batch.size());
+    return batch.size();
+  }
+
+  /**
+   * Deletes queued batches until the end marker is taken
+   */
+  private Void drain(String bucket, BlockingQueue<List<KeyVersion>> queue, ConcurrentLinkedQueue<DeleteResult.Failure> failures,
+      Progress progress) throws InterruptedException {
+    while (true) {
+      List<KeyVersion> batch = queue.take();
+      if (batch == END) {
+        return null;
+      }
+      DeleteResult result;
+      try {
+        result = deleter.apply(bucket, batch);
+      } catch (RuntimeException e) {
+        List<DeleteResult.Failure> batchFailures = new ArrayList<>(batch.size());
+        for (KeyVersion keyVersion : batch) {
+          batchFailures.add(new DeleteResult.Failure(keyVersion.getKey(), keyVersion.getVersion(), null, e.getMessage()));
+        }
+        result = new DeleteResult(new ArrayList<>(0), batchFailures);
+      }
+      failures.addAll(result.getFailures());
+      progress.deleted.addAndGet(result.getDeletedKeys().size());
+      progress.report();
+    }
+  }
+
+  private class Progress {
+
+    private final String bucket;
+    private final Consumer<EmptyBucketStatus> listener;
+    private final long start = System.currentTimeMillis();
+    private final AtomicLong listed = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private volatile ConcurrentLinkedQueue<DeleteResult.Failure> failures = new ConcurrentLinkedQueue<>();
+    private long lastReport = start;
+
+    private Progress(String bucket, Consumer<EmptyBucketStatus> listener) {
+      this.bucket = bucket;
+      this.listener = listener;
+    }
+
+    /**
+     * Versions that failed in the previous pass are listed again, so they no longer count as listed
+     * @param passFailures collects failures of the new pass
+     */
+    private void startPass(ConcurrentLinkedQueue<DeleteResult.Failure> passFailures) {
+      listed.addAndGet(-failures.size());
+      failures = passFailures;
+    }
+
+    private void report() {
+      EmptyBucketStatus status = null;
+      synchronized (this) {
+        long now = System.currentTimeMillis();
+        if (now - lastReport >= progressIntervalMillis) {
+          lastReport = now;
+          status = snapshot(false);
+        }
+      }
+      if (status != null) {
+        listener.accept(status);
+      }
+    }
+
+    private EmptyBucketStatus snapshot(boolean complete) {
+      return new EmptyBucketStatus(bucket, listed.get(), deleted.get(), new ArrayList<>(failures), System.currentTimeMillis() - start,
+          complete);
+    }
+  }
+}
@@ -2,7 +2,10 @@ package edu.colorado.cires.cmg.s3cfutils.framework;
 
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Stack;
 import java.util.List;
+import java.util.Map;
+import org.slf4j.LoggerFactory;
 
 /**
  * Operations for interaction between cloud formation templates and stacks
@@ -23,6 +26,19 @@ public interface CloudFormationOperations {
      */
     void createStackWithBodyAndWait(String stackName, String templateBody, List<ParameterKeyValue> parameters);
 
+    /**
+     * Creates a stack from a template body, waits for completion and returns the completed stack. The default
+     * implementation describes the stack once more after the wait.
+     * @param stackName the name of the stack
+     * @param templateBody content of CloudFormation template
+     * @param parameters a list of {@link ParameterKeyValue} for the template
+     * @return {@link StackResult} of the completed stack
+     */
+    default StackResult createStackWithBodyAndWaitForResult(String stackName, String templateBody, List<ParameterKeyValue> parameters) {
+        createStackWithBodyAndWait(stackName, templateBody, parameters);
+        return StackResult.fromState(describeStack(stackName));
+    }
+
     /**
      * Creates a stack with S3 bucket url and waits for completion
      * @param stackName the name of the stack
@@ -31,6 +47,37 @@ public interface CloudFormationOperations {
      */
     void createStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters);
 
+    /**
+     * Creates a stack with S3 bucket url and tags and waits for completion. The default implementation does not apply
+     * the tags, it creates the stack with {@link #createStackWithUrlAndWait(String, String, List)}.
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the template
+     * @param parameters a list of {@link ParameterKeyValue} for the template
+     * @param tags tags applied to the stack
+     */
+    default void createStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        if (!tags.isEmpty()) {
+            LoggerFactory.getLogger(getClass())
+                .debug("Stack tags are not supported, creating {} without tags {}", stackName, tags.keySet());
+        }
+        createStackWithUrlAndWait(stackName, templateUrl, parameters);
+    }
+
+    /**
+     * Creates a stack with S3 bucket url and tags, waits for completion and returns the completed stack. The default
+     * implementation describes the stack once more after the wait.
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the template
+     * @param parameters a list of {@link ParameterKeyValue} for the template
+     * @param tags tags applied to the stack
+     * @return {@link StackResult} of the completed stack
+     */
+    default StackResult createStackWithUrlAndWaitForResult(String stackName, String templateUrl, List<ParameterKeyValue> parameters,
+        Map<String, String> tags) {
+        createStackWithUrlAndWait(stackName, templateUrl, parameters, tags);
+        return StackResult.fromState(describeStack(stackName));
+    }
+
     /**
      * Updates a stack with S3 bucket url and waits for completion
      * @param stackName the name of the stack
@@ -39,6 +86,38 @@ public interface CloudFormationOperations {
      */
     void updateStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters);
 
+    /**
+     * Updates a stack with S3 bucket url and waits for completion. An update that would not change the stack completes
+     * immediately instead of failing. The default implementation does not apply the tags, it updates the stack with
+     * {@link #updateStackWithUrlAndWait(String, String, List)}.
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the updated template
+     * @param parameters a list of {@link ParameterKeyValue} for the updated template
+     * @param tags tags replacing the tags of the stack, the existing tags are kept when empty
+     */
+    default void updateStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        if (!tags.isEmpty()) {
+            LoggerFactory.getLogger(getClass())
+                .debug("Stack tags are not supported, updating {} without tags {}", stackName, tags.keySet());
+        }
+        updateStackWithUrlAndWait(stackName, templateUrl, parameters);
+    }
+
+    /**
+     * Updates a stack with S3 bucket url, waits for completion and returns the updated stack. The default implementation
+     * describes the stack once more after the wait.
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the updated template
+     * @param parameters a list of {@link ParameterKeyValue} for the updated template
+     * @param tags tags replacing the tags of the stack, the existing tags are kept when empty
+     * @return {@link StackResult} of the updated stack
+     */
+    default StackResult updateStackWithUrlAndWaitForResult(String stackName, String templateUrl, List<ParameterKeyValue> parameters,
+        Map<String, String> tags) {
+        updateStackWithUrlAndWait(stackName, templateUrl, parameters, tags);
+        return StackResult.fromState(describeStack(stackName));
+    }
+
     /**
      * Returns true if a stack with a given name exists
      * @param stackName the name of the stack
@@ -46,6 +125,23 @@ public interface CloudFormationOperations {
      */
     boolean stackExists(String stackName);
 
+    /**
+     * Describes a stack by name with a single request. The default implementation checks the stack with
+     * {@link #stackExists(String)} and reads its outputs with {@link #getStackOutputs(DescribeStacksRequest)}, its state
+     * has no status, tags or timestamps.
+     * @param stackName the name of the stack
+     * @return {@link StackState} with status, outputs, tags and last updated time, a stack that does not exist is
+     * returned as a state that does not exist rather than as an exception
+     */
+    default StackState describeStack(String stackName) {
+        if (!stackExists(stackName)) {
+            return StackState.missing(stackName);
+        }
+        return StackState.fromStack(new Stack()
+            .withStackName(stackName)
+            .withOutputs(getStackOutputs(new DescribeStacksRequest().withStackName(stackName))));
+    }
+
     /**
      * Gets template outputs for a given stack
      * @param request {@link DescribeStacksRequest} containing the stack name
@@ -0,0 +1,46 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking operations for interaction between cloud formation templates and stacks. Each operation returns as soon
+ * as it has been requested, the returned future completes when the stack reaches a terminal state.
+ */
+public interface CloudFormationOperationsAsync {
+
+  /**
+   * Creates a stack from a template body
+   * @param stackName the name of the stack
+   * @param templateBody content of CloudFormation template
+   * @param parameters a list of {@link ParameterKeyValue} for the template
+   * @return future completed with the created stack, or exceptionally with {@link StackOperationFailedException}
+   */
+  CompletableFuture<StackResult> createStackWithBodyAsync(String stackName, String templateBody, List<ParameterKeyValue> parameters);
+
+  /**
+   * Creates a stack with S3 bucket url
+   * @param stackName the name of the stack
+   * @param templateUrl S3 url to the template
+   * @param parameters a list of {@link ParameterKeyValue} for the template
+   * @return future completed with the created stack, or exceptionally with {@link StackOperationFailedException}
+   */
+  CompletableFuture<StackResult> createStackWithUrlAsync(String stackName, String templateUrl, List<ParameterKeyValue> parameters);
+
+  /**
+   * Updates a stack with S3 bucket url
+   * @param stackName the name of the stack
+   * @param templateUrl S3 url to the updated template
+   * @param parameters a list of {@link ParameterKeyValue} for the updated template
+   * @return future completed with the updated stack, or exceptionally with {@link StackOperationFailedException}
+   */
+  CompletableFuture<StackResult> updateStackWithUrlAsync(String stackName, String templateUrl, List<ParameterKeyValue> parameters);
+
+  /**
+   * Deletes a stack
+   * @param stackName the name of the stack
+   * @return future completed with the deleted stack, or exceptionally with {@link StackOperationFailedException}
+   */
+  CompletableFuture<StackResult> deleteStackAsync(String stackName);
+
+}
@@ -0,0 +1,137 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.Stack;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking operations for interaction between cloud formation templates and stacks. All in-flight stacks are
+ * monitored from one shared scheduler, no thread is parked while a stack operation is in progress.
+ */
+public class CloudFormationOperationsAsyncImpl implements CloudFormationOperationsAsync, AutoCloseable {
+
+  private final AmazonCloudFormation cf;
+  private final StackWaitPolicy waitPolicy;
+  private final ScheduledExecutorService scheduler;
+  private final Set<CompletableFuture<StackResult>> pending = ConcurrentHashMap.newKeySet();
+
+  public CloudFormationOperationsAsyncImpl(AmazonCloudFormation cf) {
+    this(cf, StackWaitPolicy.Builder.configure().build(), 1);
+  }
+
+  /**
+   * @param cf the {@link AmazonCloudFormation} client
+   * @param waitPolicy polling intervals used while waiting for stack operations
+   * @param schedulerThreads the number of threads issuing requests and polls for all stacks
+   */
+  public CloudFormationOperationsAsyncImpl(AmazonCloudFormation cf, StackWaitPolicy waitPolicy, int schedulerThreads) {
+    this.cf = cf;
+    this.waitPolicy = waitPolicy;
+    AtomicInteger threadCount = new AtomicInteger();
+    this.scheduler = Executors.newScheduledThreadPool(schedulerThreads, runnable -> {
+      Thread thread = new Thread(runnable, "cloudformation-operations-scheduler-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public CompletableFuture<StackResult> createStackWithBodyAsync(String stackName, String templateBody, List<ParameterKeyValue> parameters) {
+    return track(stackName, () -> StackEventTail.create(cf, CloudFormationOperationsImpl.createRequestWithBody(stackName, templateBody, parameters)));
+  }
+
+  @Override
+  public CompletableFuture<StackResult> createStackWithUrlAsync(String stackName, String templateUrl, List<ParameterKeyValue> parameters) {
+    return track(stackName, () -> StackEventTail.create(cf, CloudFormationOperationsImpl.createRequestWithUrl(stackName, templateUrl, parameters, Collections.emptyMap())));
+  }
+
+  @Override
+  public CompletableFuture<StackResult> updateStackWithUrlAsync(String stackName, String templateUrl, List<ParameterKeyValue> parameters) {
+    return track(stackName, () -> StackEventTail.update(cf, CloudFormationOperationsImpl.updateRequestWithUrl(stackName, templateUrl, parameters, Collections.emptyMap())));
+  }
+
+  @Override
+  public CompletableFuture<StackResult> deleteStackAsync(String stackName) {
+    return track(stackName, () -> StackEventTail.delete(cf, stackName));
+  }
+
+  /**
+   * Starts a stack operation on the scheduler and polls its events until it completes
+   * @param stackName the name of the stack
+   * @param start requests the operation, returns null if there is nothing to wait for
+   * @return future completed when the operation completes
+   */
+  private CompletableFuture<StackResult> track(String stackName, Supplier<StackEventTail> start) {
+    CompletableFuture<StackResult> future = new CompletableFuture<>();
+    pending.add(future);
+    future.whenComplete((result, e) -> pending.remove(future));
+    if (scheduler.isShutdown()) {
+      future.completeExceptionally(new CancellationException("Stack monitoring closed: " + stackName));
+      return future;
+    }
+    try {
+      scheduler.execute(() -> {
+        try {
+          StackEventTail tail = start.get();
+          if (tail == null) {
+            future.complete(new StackResult(stackName, null, "DELETE_COMPLETE", Collections.emptyList(), null));
+          } else {
+            poll(tail, future, System.currentTimeMillis() + waitPolicy.getTimeout().toMillis(), waitPolicy.getMinDelay().toMillis());
+          }
+        } catch (RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(new CancellationException("Stack monitoring closed: " + stackName));
+    }
+    return future;
+  }
+
+  /**
+   * Polls once and schedules the next poll with an adaptive delay
+   */
+  private void poll(StackEventTail tail, CompletableFuture<StackResult> future, long deadline, long delay) {
+    if (future.isDone()) {
+      return;
+    }
+    try {
+      Stack stack = tail.poll();
+      if (stack != null) {
+        future.complete(StackResult.fromStack(stack));
+        return;
+      }
+      long nextDelay = waitPolicy.nextDelayMillis(delay, tail.hasProgressed());
+      if (System.currentTimeMillis() + nextDelay > deadline) {
+        future.completeExceptionally(new IllegalStateException("Timed out waiting for stack: " + tail.getStackName()));
+        return;
+      }
+      scheduler.schedule(() -> poll(tail, future, deadline, nextDelay), nextDelay, TimeUnit.MILLISECONDS);
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Stops monitoring all in-flight stacks. Their operations continue in CloudFormation and the returned futures that
+   * have not completed yet complete exceptionally with a {@link CancellationException}.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    for (CompletableFuture<StackResult> future : pending) {
+      future.completeExceptionally(new CancellationException("Stack monitoring closed"));
+    }
+  }
+}
@@ -6,19 +6,24 @@ package edu.colorado.cires.cmg.s3cfutils.framework;
 //
 
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
 import com.amazonaws.services.cloudformation.model.Capability;
 import com.amazonaws.services.cloudformation.model.CreateStackRequest;
-import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
 import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
 import com.amazonaws.services.cloudformation.model.Output;
 import com.amazonaws.services.cloudformation.model.StackStatus;
 import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.amazonaws.services.cloudformation.model.Tag;
 import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
-import com.amazonaws.waiters.WaiterParameters;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -26,9 +31,19 @@ import java.util.stream.Collectors;
  */
 public class CloudFormationOperationsImpl implements CloudFormationOperations {
     private final AmazonCloudFormation cf;
+    private final StackWaiter waiter;
 
     public CloudFormationOperationsImpl(AmazonCloudFormation cf) {
+        this(cf, StackWaitPolicy.Builder.configure().build());
+    }
+
+    /**
+     * @param cf the {@link AmazonCloudFormation} client
+     * @param waitPolicy polling intervals used while waiting for stack operations
+     */
+    public CloudFormationOperationsImpl(AmazonCloudFormation cf, StackWaitPolicy waitPolicy) {
         this.cf = cf;
+        this.waiter = new StackWaiter(waitPolicy);
     }
 
     /**
@@ -36,8 +51,28 @@ public class CloudFormationOperationsImpl implements CloudFormationOperations {
      * @param stackName the name of the stack
      */
     public void deleteStackAndWait(String stackName) {
-        this.cf.deleteStack((new DeleteStackRequest()).withStackName(stackName));
-        this.cf.waiters().stackDeleteComplete().run(new WaiterParameters((new DescribeStacksRequest()).withStackName(stackName)));
+        StackEventTail tail = StackEventTail.delete(this.cf, stackName);
+        if (tail != null) {
+            this.waiter.await(tail);
+        }
+    }
+
+    /**
+     * Returns true if an exception reports that a stack does not exist
+     * @param e the {@link AmazonCloudFormationException}
+     * @return true if the stack does not exist
+     */
+    static boolean isStackMissing(AmazonCloudFormationException e) {
+        return e.getErrorMessage() != null && e.getErrorMessage().contains("does not exist");
+    }
+
+    /**
+     * Returns true if an exception reports that an update would not change the stack
+     * @param e the {@link AmazonCloudFormationException}
+     * @return true if there was nothing to update
+     */
+    static boolean isNoUpdate(AmazonCloudFormationException e) {
+        return e.getErrorMessage() != null && e.getErrorMessage().contains("No updates are to be performed");
     }
 
     /**
@@ -47,8 +82,25 @@ public class CloudFormationOperationsImpl implements CloudFormationOperations {
      * @param parameters a list of {@link ParameterKeyValue} for the template
      */
     public void createStackWithBodyAndWait(String stackName, String templateBody, List<ParameterKeyValue> parameters) {
-        this.cf.createStack((new CreateStackRequest()).withStackName(stackName).withTemplateBody(templateBody).withParameters((Collection)parameters.stream().map(ParameterKeyValue::toParameter).collect(Collectors.toList())));
-        this.cf.waiters().stackCreateComplete().run(new WaiterParameters((new DescribeStacksRequest()).withStackName(stackName)));
+        this.createStackWithBodyAndWaitForResult(stackName, templateBody, parameters);
+    }
+
+    /**
+     * Creates a stack from a template body and waits for completion
+     * @param stackName the name of the stack
+     * @param templateBody content of CloudFormation template
+     * @param parameters a list of {@link ParameterKeyValue} for the template
+     * @return {@link StackResult} of the final describe of the wait
+     */
+    public StackResult createStackWithBodyAndWaitForResult(String stackName, String templateBody, List<ParameterKeyValue> parameters) {
+        return StackResult.fromStack(this.waiter.await(StackEventTail.create(this.cf, createRequestWithBody(stackName, templateBody, parameters))));
+    }
+
+    /**
+     * Builds the request to create a stack from a template body
+     */
+    static CreateStackRequest createRequestWithBody(String stackName, String templateBody, List<ParameterKeyValue> parameters) {
+        return (new CreateStackRequest()).withStackName(stackName).withTemplateBody(templateBody).withParameters((Collection)parameters.stream().map(ParameterKeyValue::toParameter).collect(Collectors.toList()));
     }
 
     /**
@@ -58,8 +110,41 @@ public class CloudFormationOperationsImpl implements CloudFormationOperations {
      * @param parameters a list of {@link ParameterKeyValue} for the template
      */
     public void createStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters) {
-        this.cf.createStack((new CreateStackRequest()).withStackName(stackName).withTemplateURL(templateUrl).withCapabilities(new Capability[]{Capability.CAPABILITY_IAM, Capability.CAPABILITY_AUTO_EXPAND}).withParameters((Collection)parameters.stream().map(ParameterKeyValue::toParameter).collect(Collectors.toList())));
-        this.cf.waiters().stackCreateComplete().run(new WaiterParameters((new DescribeStacksRequest()).withStackName(stackName)));
+        this.createStackWithUrlAndWait(stackName, templateUrl, parameters, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a stack with S3 bucket url and tags and waits for completion
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the template
+     * @param parameters a list of {@link ParameterKeyValue} for the template
+     * @param tags tags applied to the stack
+     */
+    public void createStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        this.createStackWithUrlAndWaitForResult(stackName, templateUrl, parameters, tags);
+    }
+
+    /**
+     * Creates a stack with S3 bucket url and tags and waits for completion
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the template
+     * @param parameters a list of {@link ParameterKeyValue} for the template
+     * @param tags tags applied to the stack
+     * @return {@link StackResult} of the final describe of the wait
+     */
+    public StackResult createStackWithUrlAndWaitForResult(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        return StackResult.fromStack(this.waiter.await(StackEventTail.create(this.cf, createRequestWithUrl(stackName, templateUrl, parameters, tags))));
+    }
+
+    /**
+     * Builds the request to create a stack with S3 bucket url
+     */
+    static CreateStackRequest createRequestWithUrl(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        CreateStackRequest request = (new CreateStackRequest()).withStackName(stackName).withTemplateURL(templateUrl).withCapabilities(new Capability[]{Capability.CAPABILITY_IAM, Capability.CAPABILITY_AUTO_EXPAND}).withParameters((Collection)parameters.stream().map(ParameterKeyValue::toParameter).collect(Collectors.toList()));
+        if (!tags.isEmpty()) {
+            request.setTags(toTags(tags));
+        }
+        return request;
     }
 
     /**
@@ -69,7 +154,38 @@ public class CloudFormationOperationsImpl implements CloudFormationOperations {
      * @param parameters a list of {@link ParameterKeyValue} for the updated template
      */
     public void updateStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters) {
-        cf.updateStack(new UpdateStackRequest()
+        this.updateStackWithUrlAndWait(stackName, templateUrl, parameters, Collections.emptyMap());
+    }
+
+    /**
+     * Updates a stack with S3 bucket url and waits for completion
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the updated template
+     * @param parameters a list of {@link ParameterKeyValue} for the updated template
+     * @param tags tags replacing the tags of the stack, the existing tags are kept when empty
+     */
+    public void updateStackWithUrlAndWait(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        this.updateStackWithUrlAndWaitForResult(stackName, templateUrl, parameters, tags);
+    }
+
+    /**
+     * Updates a stack with S3 bucket url and waits for completion
+     * @param stackName the name of the stack
+     * @param templateUrl S3 url to the updated template
+     * @param parameters a list of {@link ParameterKeyValue} for the updated template
+     * @param tags tags replacing the tags of the stack, the existing tags are kept when empty
+     * @return {@link StackResult} of the final describe of the wait
+     */
+    public StackResult updateStackWithUrlAndWaitForResult(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        return StackResult.fromStack(waiter.await(StackEventTail.update(cf, updateRequestWithUrl(stackName, templateUrl, parameters, tags))));
+    }
+
+    /**
+     * Builds the request to update a stack with S3 bucket url. Tags are only sent when given, an update without tags
+     * keeps the existing tags of the stack.
+     */
+    static UpdateStackRequest updateRequestWithUrl(String stackName, String templateUrl, List<ParameterKeyValue> parameters, Map<String, String> tags) {
+        UpdateStackRequest request = new UpdateStackRequest()
             .withStackName(stackName)
             .withTemplateURL(templateUrl)
             .withCapabilities(Capability.CAPABILITY_IAM, Capability.CAPABILITY_AUTO_EXPAND)
@@ -77,14 +193,17 @@ public class CloudFormationOperationsImpl implements CloudFormationOperations {
                 parameters.stream()
                     .map(ParameterKeyValue::toParameter)
                     .collect(Collectors.toList())
-            )
-        );
-        try {
-            Thread.sleep(10000);
-        } catch (InterruptedException ignore) {
-
+            );
+        if (!tags.isEmpty()) {
+            request.setTags(toTags(tags));
         }
-        cf.waiters().stackUpdateComplete().run(new WaiterParameters<>(new DescribeStacksRequest().withStackName(stackName)));
+        return request;
+    }
+
+    private static List<Tag> toTags(Map<String, String> tags) {
+        return tags.entrySet().stream()
+            .map(entry -> new Tag().withKey(entry.getKey()).withValue(entry.getValue()))
+            .collect(Collectors.toList());
     }
 
     /**
@@ -93,11 +212,43 @@ public class CloudFormationOperationsImpl implements CloudFormationOperations {
      * @return true if the stack exists
      */
     public boolean stackExists(String stackName) {
-        return (Boolean)this.cf.listStacks((new ListStacksRequest()).withStackStatusFilters(new StackStatus[]{StackStatus.CREATE_IN_PROGRESS, StackStatus.CREATE_COMPLETE, StackStatus.ROLLBACK_IN_PROGRESS, StackStatus.ROLLBACK_FAILED, StackStatus.ROLLBACK_COMPLETE, StackStatus.DELETE_FAILED, StackStatus.UPDATE_IN_PROGRESS, StackStatus.UPDATE_COMPLETE_CLEANUP_IN_PROGRESS, StackStatus.UPDATE_COMPLETE, StackStatus.UPDATE_ROLLBACK_IN_PROGRESS, StackStatus.UPDATE_ROLLBACK_FAILED, StackStatus.UPDATE_ROLLBACK_COMPLETE_CLEANUP_IN_PROGRESS, StackStatus.UPDATE_ROLLBACK_COMPLETE, StackStatus.REVIEW_IN_PROGRESS, StackStatus.IMPORT_IN_PROGRESS, StackStatus.IMPORT_COMPLETE, StackStatus.IMPORT_ROLLBACK_IN_PROGRESS, StackStatus.IMPORT_ROLLBACK_FAILED, StackStatus.IMPORT_ROLLBACK_COMPLETE})).getStackSummaries().stream().map(StackSummary::getStackName).filter((name) -> {
-            return name.equals(stackName);
-        }).findFirst().map((name) -> {
-            return true;
-        }).orElse(false);
+        return this.describeStack(stackName).exists();
+    }
+
+    /**
+     * Describes a stack by name with a single request
+     * @param stackName the name of the stack
+     * @return {@link StackState} of the stack, which does not exist if it was never created or has been deleted
+     */
+    public StackState describeStack(String stackName) {
+        try {
+            DescribeStacksResult result = this.cf.describeStacks(new DescribeStacksRequest().withStackName(stackName));
+            return result.getStacks().isEmpty() ? StackState.missing(stackName) : StackState.fromStack(result.getStacks().get(0));
+        } catch (AmazonCloudFormationException e) {
+            if (isStackMissing(e)) {
+                return StackState.missing(stackName);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lists every stack of the account and region that has not been deleted, following all result pages
+     * @return List of {@link StackSummary} of all stacks not in DELETE_COMPLETE status
+     */
+    public List<StackSummary> listStacks() {
+        List<String> statuses = Arrays.stream(StackStatus.values())
+            .filter(status -> status != StackStatus.DELETE_COMPLETE)
+            .map(StackStatus::toString)
+            .collect(Collectors.toList());
+        List<StackSummary> summaries = new ArrayList<>();
+        String nextToken = null;
+        do {
+            ListStacksResult result = this.cf.listStacks(new ListStacksRequest().withStackStatusFilters(statuses).withNextToken(nextToken));
+            summaries.addAll(result.getStackSummaries());
+            nextToken = result.getNextToken();
+        } while (nextToken != null);
+        return summaries;
     }
 
     /**
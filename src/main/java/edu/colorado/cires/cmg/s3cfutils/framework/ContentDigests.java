@@ -0,0 +1,119 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Utilities for comparing local content with S3 objects
+ */
+final class ContentDigests {
+
+  /**
+   * User metadata key holding the hex MD5 of an object's content. Set on upload so objects with multipart ETags can
+   * still be compared with local content.
+   */
+  static final String MD5_METADATA_KEY = "md5";
+
+  /**
+   * Computes the hex encoded MD5 of a file
+   * @param file the file to digest
+   * @return hex encoded MD5
+   */
+  static String md5Hex(Path file) {
+    try {
+      return BinaryUtils.toHex(Md5Utils.computeMD5Hash(file.toFile()));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to compute MD5: " + file, e);
+    }
+  }
+
+  /**
+   * @return a new MD5 {@link MessageDigest}
+   */
+  static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  /**
+   * Computes the hex encoded MD5 of in-memory content
+   * @param content the content to digest
+   * @return hex encoded MD5
+   */
+  static String md5Hex(byte[] content) {
+    return BinaryUtils.toHex(Md5Utils.computeMD5Hash(content));
+  }
+
+  /**
+   * Computes the hex encoded MD5 of a stream, the stream is read to its end and closed
+   * @param in the stream to digest
+   * @return hex encoded MD5
+   */
+  static String md5Hex(InputStream in) {
+    try {
+      return BinaryUtils.toHex(Md5Utils.computeMD5Hash(in));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to compute MD5", e);
+    }
+  }
+
+  /**
+   * Returns true if an object matches local content of a given size and MD5
+   * @param remote the remote object summary
+   * @param size the size of the local content
+   * @param md5Hex the hex encoded MD5 of the local content
+   * @param userMetadata supplies the remote object's user metadata, only called for multipart ETags
+   * @return true if the remote object has the same content
+   */
+  static boolean matches(ObjectSummary remote, long size, String md5Hex, Supplier<Map<String, String>> userMetadata) {
+    if (remote.getSize() != size) {
+      return false;
+    }
+    if (!remote.isMultipartETag()) {
+      return md5Hex.equalsIgnoreCase(stripQuotes(remote.getETag()));
+    }
+    return md5Hex.equalsIgnoreCase(userMetadata.get().get(MD5_METADATA_KEY));
+  }
+
+  /**
+   * Returns the MD5 of an object's content when its metadata reveals it, either from the md5 user metadata or from an
+   * ETag that is neither a multipart ETag nor the ETag of an object encrypted with SSE-KMS or SSE-C
+   * @param metadata the object metadata
+   * @return hex encoded MD5, or null if it is not known
+   */
+  static String knownMd5Hex(ObjectMetadata metadata) {
+    String md5Hex = metadata.getUserMetaDataOf(MD5_METADATA_KEY);
+    if (md5Hex != null) {
+      return md5Hex;
+    }
+    String eTag = stripQuotes(metadata.getETag());
+    if (eTag == null || eTag.contains("-") || metadata.getSSECustomerAlgorithm() != null
+        || SSEAlgorithm.KMS.getAlgorithm().equals(metadata.getSSEAlgorithm())) {
+      return null;
+    }
+    return eTag;
+  }
+
+  private static String stripQuotes(String eTag) {
+    if (eTag != null && eTag.length() > 1 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+      return eTag.substring(1, eTag.length() - 1);
+    }
+    return eTag;
+  }
+
+  private ContentDigests() {
+
+  }
+}
@@ -0,0 +1,114 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of copying or moving objects between buckets
+ */
+public class CopyResult {
+
+  private final List<String> copiedKeys;
+  private final long copiedBytes;
+  private final List<Failure> failures;
+  private final DeleteResult deleteResult;
+
+  public CopyResult(List<String> copiedKeys, long copiedBytes, List<Failure> failures, DeleteResult deleteResult) {
+    this.copiedKeys = Collections.unmodifiableList(copiedKeys);
+    this.copiedBytes = copiedBytes;
+    this.failures = Collections.unmodifiableList(failures);
+    this.deleteResult = deleteResult;
+  }
+
+  /**
+   * @return source keys of the objects that were copied
+   */
+  public List<String> getCopiedKeys() {
+    return copiedKeys;
+  }
+
+  /**
+   * @return the total size in bytes of the copied objects whose size was known, from the listing of a prefix copy or
+   * from a copy in parts
+   */
+  public long getCopiedBytes() {
+    return copiedBytes;
+  }
+
+  /**
+   * @return a {@link Failure} for each object that could not be copied
+   */
+  public List<Failure> getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return {@link DeleteResult} of deleting the sources of moved objects, empty for copies
+   */
+  public DeleteResult getDeleteResult() {
+    return deleteResult;
+  }
+
+  /**
+   * @return true if every object was copied and, for moves, every source was deleted
+   */
+  public boolean isSuccessful() {
+    return failures.isEmpty() && deleteResult.isSuccessful();
+  }
+
+  /**
+   * Returns a result for the same copies with the sources deleted
+   * @param deleteResult {@link DeleteResult} of deleting the sources
+   * @return {@link CopyResult} of a move
+   */
+  public CopyResult withDeleteResult(DeleteResult deleteResult) {
+    return new CopyResult(copiedKeys, copiedBytes, failures, deleteResult);
+  }
+
+  @Override
+  public String toString() {
+    return "CopyResult{copied=" + copiedKeys.size() + ", bytes=" + copiedBytes + ", failures=" + failures + ", deleteResult=" + deleteResult + "}";
+  }
+
+  /**
+   * An object that could not be copied
+   */
+  public static class Failure {
+
+    private final String sourceKey;
+    private final String targetKey;
+    private final String code;
+    private final String message;
+
+    public Failure(String sourceKey, String targetKey, String code, String message) {
+      this.sourceKey = sourceKey;
+      this.targetKey = targetKey;
+      this.code = code;
+      this.message = message;
+    }
+
+    public String getSourceKey() {
+      return sourceKey;
+    }
+
+    public String getTargetKey() {
+      return targetKey;
+    }
+
+    /**
+     * @return the S3 error code, or null if the request did not reach S3
+     */
+    public String getCode() {
+      return code;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return sourceKey + " -> " + targetKey + ": " + code + " " + message;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of deleting objects from a bucket
+ */
+public class DeleteResult {
+
+  private final List<String> deletedKeys;
+  private final List<Failure> failures;
+
+  public DeleteResult(List<String> deletedKeys, List<Failure> failures) {
+    this.deletedKeys = Collections.unmodifiableList(deletedKeys);
+    this.failures = Collections.unmodifiableList(failures);
+  }
+
+  /**
+   * Combines the results of several delete requests
+   * @param results the results to combine
+   * @return a single {@link DeleteResult} containing all deleted keys and failures
+   */
+  public static DeleteResult merge(List<DeleteResult> results) {
+    List<String> deletedKeys = new ArrayList<>();
+    List<Failure> failures = new ArrayList<>();
+    for (DeleteResult result : results) {
+      deletedKeys.addAll(result.getDeletedKeys());
+      failures.addAll(result.getFailures());
+    }
+    return new DeleteResult(deletedKeys, failures);
+  }
+
+  /**
+   * @return locations of objects deleted from the bucket
+   */
+  public List<String> getDeletedKeys() {
+    return deletedKeys;
+  }
+
+  /**
+   * @return a {@link Failure} for each object that could not be deleted
+   */
+  public List<Failure> getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return true if every requested object was deleted
+   */
+  public boolean isSuccessful() {
+    return failures.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "DeleteResult{deleted=" + deletedKeys.size() + ", failures=" + failures + "}";
+  }
+
+  /**
+   * An object that could not be deleted
+   */
+  public static class Failure {
+
+    private final String key;
+    private final String versionId;
+    private final String code;
+    private final String message;
+
+    public Failure(String key, String versionId, String code, String message) {
+      this.key = key;
+      this.versionId = versionId;
+      this.code = code;
+      this.message = message;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public String getVersionId() {
+      return versionId;
+    }
+
+    public String getCode() {
+      return code;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return "Failure{key='" + key + "', versionId='" + versionId + "', code='" + code + "', message='" + message + "'}";
+    }
+  }
+}
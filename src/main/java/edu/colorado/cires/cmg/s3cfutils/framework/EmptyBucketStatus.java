@@ -0,0 +1,83 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Progress of emptying a bucket of all object versions and delete markers
+ */
+public class EmptyBucketStatus {
+
+  private final String bucket;
+  private final long listedCount;
+  private final long deletedCount;
+  private final List<DeleteResult.Failure> failures;
+  private final long elapsedMillis;
+  private final boolean complete;
+
+  public EmptyBucketStatus(String bucket, long listedCount, long deletedCount, List<DeleteResult.Failure> failures, long elapsedMillis,
+      boolean complete) {
+    this.bucket = bucket;
+    this.listedCount = listedCount;
+    this.deletedCount = deletedCount;
+    this.failures = Collections.unmodifiableList(failures);
+    this.elapsedMillis = elapsedMillis;
+    this.complete = complete;
+  }
+
+  public String getBucket() {
+    return bucket;
+  }
+
+  /**
+   * @return the number of object versions and delete markers listed so far
+   */
+  public long getListedCount() {
+    return listedCount;
+  }
+
+  /**
+   * @return the number of object versions and delete markers deleted so far
+   */
+  public long getDeletedCount() {
+    return deletedCount;
+  }
+
+  /**
+   * @return a {@link DeleteResult.Failure} for each version that could not be deleted
+   */
+  public List<DeleteResult.Failure> getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return the number of listed versions that are still waiting to be deleted
+   */
+  public long getRemainingCount() {
+    return Math.max(0L, listedCount - deletedCount - failures.size());
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * @return deleted versions per second since emptying started
+   */
+  public double getDeletedPerSecond() {
+    return elapsedMillis == 0L ? 0D : deletedCount * 1000D / elapsedMillis;
+  }
+
+  /**
+   * @return true once emptying has finished, the bucket is empty if there are no failures
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("EmptyBucketStatus{bucket='%s', listed=%d, deleted=%d, remaining=%d, failures=%d, deletedPerSecond=%.1f, complete=%s}",
+        bucket, listedCount, deletedCount, getRemainingCount(), failures.size(), getDeletedPerSecond(), complete);
+  }
+}
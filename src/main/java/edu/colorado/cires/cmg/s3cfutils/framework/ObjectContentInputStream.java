@@ -0,0 +1,50 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+
+/**
+ * The content of a GET that is aborted when it is closed before the end of the content was read. Closing the raw
+ * content would read the rest of the response to reuse the connection, which for a large object is much slower than
+ * opening a new connection.
+ */
+class ObjectContentInputStream extends FilterInputStream {
+
+  private final S3ObjectInputStream content;
+  private boolean eof;
+
+  /**
+   * @param content the content of the GET
+   */
+  ObjectContentInputStream(S3ObjectInputStream content) {
+    super(content);
+    this.content = content;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b < 0) {
+      eof = true;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int read = super.read(b, off, len);
+    if (read < 0) {
+      eof = true;
+    }
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!eof) {
+      content.abort();
+    }
+    super.close();
+  }
+}
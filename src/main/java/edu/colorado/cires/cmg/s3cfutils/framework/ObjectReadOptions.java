@@ -0,0 +1,127 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+/**
+ * How an object is read by {@link S3Operations#openObject(String, String, ObjectReadOptions)}: the byte range to read
+ * and whether chunks of the object are fetched ahead of the reader. Without read-ahead the range is read with a single
+ * GET as the caller consumes it. With read-ahead the range is fetched in chunks of a fixed size and up to a number of
+ * chunks are requested in the background, so the network transfer overlaps with the work of the reader.
+ */
+public class ObjectReadOptions {
+
+  /**
+   * Default size in bytes of each read-ahead chunk
+   */
+  public static final int DEFAULT_READ_AHEAD_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private static final ObjectReadOptions DEFAULTS = Builder.configure().build();
+
+  private final long position;
+  private final long length;
+  private final int readAheadChunks;
+  private final int readAheadChunkSize;
+
+  private ObjectReadOptions(Builder builder) {
+    position = builder.position;
+    length = builder.length;
+    readAheadChunks = builder.readAheadChunks;
+    readAheadChunkSize = builder.readAheadChunkSize;
+  }
+
+  /**
+   * @return options reading the whole object with a single GET
+   */
+  public static ObjectReadOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * @return the offset of the first byte to read
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * @return the number of bytes to read, or -1 to read to the end of the object
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return the number of chunks fetched ahead of the reader, 0 without read-ahead
+   */
+  public int getReadAheadChunks() {
+    return readAheadChunks;
+  }
+
+  /**
+   * @return the size in bytes of each read-ahead chunk
+   */
+  public int getReadAheadChunkSize() {
+    return readAheadChunkSize;
+  }
+
+  /**
+   * @return true if a part of the object is read rather than all of it
+   */
+  boolean isRanged() {
+    return position > 0L || length >= 0L;
+  }
+
+  public static class Builder {
+
+    private long position;
+    private long length = -1L;
+    private int readAheadChunks;
+    private int readAheadChunkSize = DEFAULT_READ_AHEAD_CHUNK_SIZE;
+
+    public static Builder configure() {
+      return new Builder();
+    }
+
+    private Builder() {
+
+    }
+
+    /**
+     * Reads a byte range of the object
+     * @param position the offset of the first byte to read
+     * @param length the number of bytes to read, or -1 to read to the end of the object
+     * @return this builder
+     */
+    public Builder withRange(long position, long length) {
+      this.position = position;
+      this.length = length;
+      return this;
+    }
+
+    /**
+     * Fetches chunks of the object ahead of the reader
+     * @param chunks the number of chunks requested ahead of the one being read
+     * @param chunkSize the size in bytes of each chunk
+     * @return this builder
+     */
+    public Builder withReadAhead(int chunks, int chunkSize) {
+      this.readAheadChunks = chunks;
+      this.readAheadChunkSize = chunkSize;
+      return this;
+    }
+
+    public ObjectReadOptions build() {
+      if (position < 0L) {
+        throw new IllegalArgumentException("position must not be negative");
+      }
+      if (length < -1L) {
+        throw new IllegalArgumentException("length must be -1 or at least 0");
+      }
+      if (readAheadChunks < 0) {
+        throw new IllegalArgumentException("readAheadChunks must not be negative");
+      }
+      if (readAheadChunkSize < 1) {
+        throw new IllegalArgumentException("readAheadChunkSize must be at least 1");
+      }
+      return new ObjectReadOptions(this);
+    }
+  }
+}
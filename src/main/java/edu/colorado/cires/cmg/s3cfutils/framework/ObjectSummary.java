@@ -0,0 +1,50 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.time.Instant;
+
+/**
+ * Identifying information belonging to an S3 object within a bucket listing
+ */
+public class ObjectSummary {
+
+  private final String key;
+  private final long size;
+  private final String eTag;
+  private final Instant lastModified;
+
+  public ObjectSummary(String key, long size, String eTag, Instant lastModified) {
+    this.key = key;
+    this.size = size;
+    this.eTag = eTag;
+    this.lastModified = lastModified;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public String getETag() {
+    return eTag;
+  }
+
+  public Instant getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Returns true if the ETag was produced by a multipart upload and is therefore not the MD5 of the object content
+   * @return true if the ETag is a multipart ETag
+   */
+  public boolean isMultipartETag() {
+    return eTag != null && eTag.contains("-");
+  }
+
+  @Override
+  public String toString() {
+    return "ObjectSummary{key='" + key + "', size=" + size + ", eTag='" + eTag + "', lastModified=" + lastModified + "}";
+  }
+}
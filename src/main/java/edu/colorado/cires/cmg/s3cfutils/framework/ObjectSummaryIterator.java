@@ -0,0 +1,96 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Lazily pages through a bucket listing. While the current page is consumed the next page is requested in the
+ * background.
+ */
+class ObjectSummaryIterator implements Iterator<ObjectSummary>, AutoCloseable {
+
+  private final AmazonS3 s3;
+  private final Executor executor;
+  private final String bucket;
+  private final String prefix;
+  private Iterator<S3ObjectSummary> page;
+  private CompletableFuture<ListObjectsV2Result> nextPage;
+
+  ObjectSummaryIterator(AmazonS3 s3, Executor executor, String bucket, String prefix) {
+    this.s3 = s3;
+    this.executor = executor;
+    this.bucket = bucket;
+    this.prefix = prefix;
+    accept(s3.listObjectsV2(new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix)));
+  }
+
+  /**
+   * Makes a listing page current and starts fetching the following page
+   * @param result the listing page
+   */
+  private void accept(ListObjectsV2Result result) {
+    page = result.getObjectSummaries().iterator();
+    if (result.isTruncated()) {
+      ListObjectsV2Request next = new ListObjectsV2Request()
+          .withBucketName(bucket)
+          .withPrefix(prefix)
+          .withContinuationToken(result.getNextContinuationToken());
+      nextPage = CompletableFuture.supplyAsync(() -> s3.listObjectsV2(next), executor);
+    } else {
+      nextPage = null;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!page.hasNext()) {
+      if (nextPage == null) {
+        return false;
+      }
+      try {
+        accept(nextPage.join());
+      } catch (CompletionException e) {
+        nextPage = null;
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public ObjectSummary next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return toObjectSummary(page.next());
+  }
+
+  static ObjectSummary toObjectSummary(S3ObjectSummary summary) {
+    return new ObjectSummary(
+        summary.getKey(),
+        summary.getSize(),
+        summary.getETag(),
+        summary.getLastModified() == null ? null : summary.getLastModified().toInstant());
+  }
+
+  /**
+   * Abandons any page that is still being fetched
+   */
+  @Override
+  public void close() {
+    if (nextPage != null) {
+      nextPage.cancel(false);
+      nextPage = null;
+    }
+  }
+}
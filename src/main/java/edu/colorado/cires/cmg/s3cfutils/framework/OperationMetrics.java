@@ -0,0 +1,57 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.Map;
+
+/**
+ * Receives the timings of stack operation phases and of the AWS API calls made during them. Implementations must be
+ * thread safe, phases and API calls complete on worker threads.
+ */
+public interface OperationMetrics {
+
+  /**
+   * @return {@link OperationMetrics} that ignores everything it receives
+   */
+  static OperationMetrics noop() {
+    return new OperationMetrics() {
+      @Override
+      public void phaseCompleted(OperationPhase phase, String target, long elapsedMillis, boolean succeeded, Map<String, Object> attributes) {
+
+      }
+
+      @Override
+      public void apiCallCompleted(String service, String operation, int attempts, long elapsedMillis, boolean succeeded) {
+
+      }
+    };
+  }
+
+  /**
+   * Called when a phase has completed or failed
+   * @param phase the {@link OperationPhase}
+   * @param target the stack or bucket the phase worked on
+   * @param elapsedMillis the duration of the phase
+   * @param succeeded false if the phase threw
+   * @param attributes phase specific counts such as files and bytes synced
+   */
+  void phaseCompleted(OperationPhase phase, String target, long elapsedMillis, boolean succeeded, Map<String, Object> attributes);
+
+  /**
+   * Called when an AWS API request has completed or failed, after all of its attempts
+   * @param service the AWS service name
+   * @param operation the API operation name
+   * @param attempts the number of attempts, more than one when the request was retried
+   * @param elapsedMillis the duration of the request including retries
+   * @param succeeded false if the request failed
+   */
+  void apiCallCompleted(String service, String operation, int attempts, long elapsedMillis, boolean succeeded);
+
+  /**
+   * Starts timing a phase
+   * @param phase the {@link OperationPhase}
+   * @param target the stack or bucket the phase works on
+   * @return a {@link PhaseTimer} reporting the phase to this {@link OperationMetrics} when closed
+   */
+  default PhaseTimer start(OperationPhase phase, String target) {
+    return new PhaseTimer(this, phase, target);
+  }
+}
@@ -0,0 +1,326 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default {@link OperationMetrics}. Logs every phase with its duration as it completes, aggregates API calls by service
+ * and operation, and writes both to a JSON timing report:
+ * <pre>
+ * {
+ *   "operation": "create-stack",
+ *   "startTime": "2024-05-01T12:00:00Z",
+ *   "totalMillis": 184233,
+ *   "apiCalls": 412,
+ *   "retries": 3,
+ *   "phases": [
+ *     { "phase": "BUCKET_SYNC", "target": "test-abc-deployment", "elapsedMillis": 2310, "succeeded": true,
+ *       "attributes": { "files": 57, "bytes": 812345, "bytesPerSecond": 351664 } }
+ *   ],
+ *   "apiCallStats": [
+ *     { "service": "AmazonCloudFormation", "operation": "DescribeStackEvents", "calls": 96, "attempts": 97, "retries": 1,
+ *       "failures": 0, "totalMillis": 9120, "maxMillis": 412 }
+ *   ]
+ * }
+ * </pre>
+ */
+public class OperationMetricsReport implements OperationMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OperationMetricsReport.class);
+
+  /**
+   * The report file name, written to the maven target directory next to test-id.txt
+   */
+  public static final String REPORT_FILE_NAME = "test-metrics.json";
+
+  private final ObjectMapper objectMapper;
+  private final Instant startTime = Instant.now();
+  private final long startNanos = System.nanoTime();
+  private final List<PhaseRecord> phases = new ArrayList<>();
+  private final Map<String, ApiCallStats> apiCallStats = new TreeMap<>();
+
+  public OperationMetricsReport(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public void phaseCompleted(OperationPhase phase, String target, long elapsedMillis, boolean succeeded, Map<String, Object> attributes) {
+    LOGGER.info("Phase {} {} {} in {} ms {}", phase, target, succeeded ? "completed" : "failed", elapsedMillis, attributes);
+    PhaseRecord record = new PhaseRecord();
+    record.setPhase(phase);
+    record.setTarget(target);
+    record.setElapsedMillis(elapsedMillis);
+    record.setSucceeded(succeeded);
+    record.setAttributes(new LinkedHashMap<>(attributes));
+    synchronized (this) {
+      phases.add(record);
+    }
+  }
+
+  @Override
+  public synchronized void apiCallCompleted(String service, String operation, int attempts, long elapsedMillis, boolean succeeded) {
+    ApiCallStats stats = apiCallStats.computeIfAbsent(service + "/" + operation, key -> {
+      ApiCallStats created = new ApiCallStats();
+      created.setService(service);
+      created.setOperation(operation);
+      return created;
+    });
+    stats.setCalls(stats.getCalls() + 1);
+    stats.setAttempts(stats.getAttempts() + attempts);
+    stats.setRetries(stats.getRetries() + attempts - 1);
+    stats.setFailures(stats.getFailures() + (succeeded ? 0 : 1));
+    stats.setTotalMillis(stats.getTotalMillis() + elapsedMillis);
+    stats.setMaxMillis(Math.max(stats.getMaxMillis(), elapsedMillis));
+  }
+
+  /**
+   * @param operation the name of the operation the report covers
+   * @return a snapshot of the phases and API calls so far
+   */
+  public synchronized Report getReport(String operation) {
+    Report report = new Report();
+    report.setOperation(operation);
+    report.setStartTime(startTime.toString());
+    report.setTotalMillis((System.nanoTime() - startNanos) / 1_000_000L);
+    report.setPhases(new ArrayList<>(phases));
+    report.setApiCallStats(new ArrayList<>(apiCallStats.values()));
+    for (ApiCallStats stats : apiCallStats.values()) {
+      report.setApiCalls(report.getApiCalls() + stats.getCalls());
+      report.setRetries(report.getRetries() + stats.getRetries());
+    }
+    return report;
+  }
+
+  /**
+   * Writes the report to {@link #REPORT_FILE_NAME} in a directory
+   * @param targetDir the maven target directory path
+   * @param operation the name of the operation the report covers
+   */
+  public void write(Path targetDir, String operation) {
+    Report report = getReport(operation);
+    Path file = targetDir.resolve(REPORT_FILE_NAME);
+
+    LOGGER.info("Writing Metrics Report: {} took {} ms, {} API calls, {} retries", operation, report.getTotalMillis(),
+        report.getApiCalls(), report.getRetries());
+
+    try {
+      Files.createDirectories(targetDir);
+      objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write metrics report", e);
+    }
+
+    LOGGER.info("Done Writing Metrics Report: {}", file);
+  }
+
+  /**
+   * Contents of the report file
+   */
+  public static class Report {
+
+    private String operation;
+    private String startTime;
+    private long totalMillis;
+    private long apiCalls;
+    private long retries;
+    private List<PhaseRecord> phases = new ArrayList<>();
+    private List<ApiCallStats> apiCallStats = new ArrayList<>();
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public void setOperation(String operation) {
+      this.operation = operation;
+    }
+
+    public String getStartTime() {
+      return startTime;
+    }
+
+    public void setStartTime(String startTime) {
+      this.startTime = startTime;
+    }
+
+    public long getTotalMillis() {
+      return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+      this.totalMillis = totalMillis;
+    }
+
+    public long getApiCalls() {
+      return apiCalls;
+    }
+
+    public void setApiCalls(long apiCalls) {
+      this.apiCalls = apiCalls;
+    }
+
+    public long getRetries() {
+      return retries;
+    }
+
+    public void setRetries(long retries) {
+      this.retries = retries;
+    }
+
+    public List<PhaseRecord> getPhases() {
+      return phases;
+    }
+
+    public void setPhases(List<PhaseRecord> phases) {
+      this.phases = phases;
+    }
+
+    public List<ApiCallStats> getApiCallStats() {
+      return apiCallStats;
+    }
+
+    public void setApiCallStats(List<ApiCallStats> apiCallStats) {
+      this.apiCallStats = apiCallStats;
+    }
+  }
+
+  /**
+   * A completed phase
+   */
+  public static class PhaseRecord {
+
+    private OperationPhase phase;
+    private String target;
+    private long elapsedMillis;
+    private boolean succeeded;
+    private Map<String, Object> attributes = new LinkedHashMap<>();
+
+    public OperationPhase getPhase() {
+      return phase;
+    }
+
+    public void setPhase(OperationPhase phase) {
+      this.phase = phase;
+    }
+
+    public String getTarget() {
+      return target;
+    }
+
+    public void setTarget(String target) {
+      this.target = target;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isSucceeded() {
+      return succeeded;
+    }
+
+    public void setSucceeded(boolean succeeded) {
+      this.succeeded = succeeded;
+    }
+
+    public Map<String, Object> getAttributes() {
+      return attributes;
+    }
+
+    public void setAttributes(Map<String, Object> attributes) {
+      this.attributes = attributes;
+    }
+  }
+
+  /**
+   * Aggregated calls of one API operation
+   */
+  public static class ApiCallStats {
+
+    private String service;
+    private String operation;
+    private long calls;
+    private long attempts;
+    private long retries;
+    private long failures;
+    private long totalMillis;
+    private long maxMillis;
+
+    public String getService() {
+      return service;
+    }
+
+    public void setService(String service) {
+      this.service = service;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public void setOperation(String operation) {
+      this.operation = operation;
+    }
+
+    public long getCalls() {
+      return calls;
+    }
+
+    public void setCalls(long calls) {
+      this.calls = calls;
+    }
+
+    public long getAttempts() {
+      return attempts;
+    }
+
+    public void setAttempts(long attempts) {
+      this.attempts = attempts;
+    }
+
+    public long getRetries() {
+      return retries;
+    }
+
+    public void setRetries(long retries) {
+      this.retries = retries;
+    }
+
+    public long getFailures() {
+      return failures;
+    }
+
+    public void setFailures(long failures) {
+      this.failures = failures;
+    }
+
+    public long getTotalMillis() {
+      return totalMillis;
+    }
+
+    public void setTotalMillis(long totalMillis) {
+      this.totalMillis = totalMillis;
+    }
+
+    public long getMaxMillis() {
+      return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+      this.maxMillis = maxMillis;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+/**
+ * Timed phases of the create, update and delete stack operations
+ */
+public enum OperationPhase {
+  PARAMETER_LOAD,
+  STACK_EXISTS,
+  DEPLOYMENT_STACK_CREATE,
+  BUNDLE_EXTRACT,
+  BUNDLE_FINGERPRINT,
+  BUCKET_SYNC,
+  STACK_CREATE,
+  STACK_UPDATE,
+  BUCKET_EMPTY,
+  STACK_DELETE,
+  OUTPUT_WRITE
+}
@@ -0,0 +1,204 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lists a bucket by partition. The top-level partitions below the prefix are discovered with a delimiter listing and
+ * up to a fixed number of partitions are then listed at the same time, each by its own continuation token chain. Every
+ * partition is buffered until it has been listed completely. In key order partitions are handed out in sequence,
+ * otherwise in the order they complete.
+ */
+class PartitionedObjectIterator implements Iterator<ObjectSummary>, AutoCloseable {
+
+  private static final String DELIMITER = "/";
+
+  private final AmazonS3 s3;
+  private final ExecutorService executor;
+  private final String bucket;
+  private final int parallelism;
+  private final boolean ordered;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private final Deque<Future<List<S3ObjectSummary>>> inFlight = new ArrayDeque<>();
+  private final CompletionService<List<S3ObjectSummary>> completed;
+  private Iterator<S3ObjectSummary> page = Collections.emptyIterator();
+
+  PartitionedObjectIterator(AmazonS3 s3, ExecutorService executor, String bucket, String prefix, int parallelism, boolean ordered) {
+    this.s3 = s3;
+    this.executor = executor;
+    this.bucket = bucket;
+    this.parallelism = parallelism;
+    this.ordered = ordered;
+    this.completed = ordered ? null : new ExecutorCompletionService<>(executor);
+    discover(prefix == null ? "" : prefix);
+    submit();
+  }
+
+  /**
+   * Splits the listing below a prefix into segments in key order: runs of objects directly below the prefix, which the
+   * delimiter listing has already returned, and the partitions that still have to be listed
+   * @param prefix the object prefix
+   */
+  private void discover(String prefix) {
+    List<S3ObjectSummary> objects = new ArrayList<>();
+    List<S3ObjectSummary> direct = new ArrayList<>();
+    ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix).withDelimiter(DELIMITER);
+    ListObjectsV2Result result;
+    do {
+      result = s3.listObjectsV2(request);
+      Iterator<S3ObjectSummary> summaries = result.getObjectSummaries().iterator();
+      S3ObjectSummary summary = summaries.hasNext() ? summaries.next() : null;
+      for (String partition : result.getCommonPrefixes()) {
+        while (summary != null && summary.getKey().compareTo(partition) < 0) {
+          objects.add(summary);
+          summary = summaries.hasNext() ? summaries.next() : null;
+        }
+        if (!objects.isEmpty()) {
+          segments.add(new Segment(null, objects));
+          direct.addAll(objects);
+          objects = new ArrayList<>();
+        }
+        segments.add(new Segment(partition, null));
+      }
+      while (summary != null) {
+        objects.add(summary);
+        summary = summaries.hasNext() ? summaries.next() : null;
+      }
+      request.setContinuationToken(result.getNextContinuationToken());
+    } while (result.isTruncated());
+    if (!objects.isEmpty()) {
+      segments.add(new Segment(null, objects));
+      direct.addAll(objects);
+    }
+    if (!ordered) {
+      // objects that are already known come first, only partitions are left to list
+      segments.removeIf(segment -> segment.objects != null);
+      page = direct.iterator();
+    }
+  }
+
+  /**
+   * Starts listing partitions until the parallelism is reached
+   */
+  private void submit() {
+    while (inFlight.size() < parallelism && !segments.isEmpty()) {
+      Segment segment = segments.removeFirst();
+      if (segment.objects != null) {
+        inFlight.add(CompletableFuture.completedFuture(segment.objects));
+      } else if (ordered) {
+        inFlight.add(executor.submit(() -> listPartition(segment.partition)));
+      } else {
+        inFlight.add(completed.submit(() -> listPartition(segment.partition)));
+      }
+    }
+  }
+
+  /**
+   * Lists every object of a partition
+   * @param partition the partition prefix
+   * @return the objects of the partition in key order
+   */
+  private List<S3ObjectSummary> listPartition(String partition) {
+    List<S3ObjectSummary> objects = new ArrayList<>();
+    ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket).withPrefix(partition);
+    ListObjectsV2Result result;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new IllegalStateException("Listing of partition '" + partition + "' was cancelled");
+      }
+      result = s3.listObjectsV2(request);
+      objects.addAll(result.getObjectSummaries());
+      request.setContinuationToken(result.getNextContinuationToken());
+    } while (result.isTruncated());
+    return objects;
+  }
+
+  /**
+   * Waits for the next listed segment, the first in key order or the first to complete
+   * @return the objects of the segment
+   */
+  private List<S3ObjectSummary> take() {
+    try {
+      Future<List<S3ObjectSummary>> next;
+      if (ordered) {
+        next = inFlight.removeFirst();
+      } else {
+        next = completed.take();
+        inFlight.remove(next);
+      }
+      submit();
+      return next.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new IllegalStateException("Interrupted while listing bucket '" + bucket + "'", e);
+    } catch (ExecutionException e) {
+      close();
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException("Unable to list bucket '" + bucket + "'", cause);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!page.hasNext()) {
+      if (inFlight.isEmpty()) {
+        return false;
+      }
+      page = take().iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public ObjectSummary next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return ObjectSummaryIterator.toObjectSummary(page.next());
+  }
+
+  /**
+   * Abandons the partitions that are still being listed
+   */
+  @Override
+  public void close() {
+    segments.clear();
+    for (Future<List<S3ObjectSummary>> future : inFlight) {
+      future.cancel(true);
+    }
+    inFlight.clear();
+  }
+
+  /**
+   * Either objects that are already listed or a partition that still has to be listed
+   */
+  private static class Segment {
+
+    private final String partition;
+    private final List<S3ObjectSummary> objects;
+
+    private Segment(String partition, List<S3ObjectSummary> objects) {
+      this.partition = partition;
+      this.objects = objects;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times one phase of an operation. The phase is reported when the timer is closed, as succeeded only if
+ * {@link #complete()} was called before.
+ * <pre>
+ * try (PhaseTimer timer = metrics.start(OperationPhase.BUCKET_SYNC, bucketName)) {
+ *   SyncResult result = s3.syncDirectoryToBucket(dir, bucketName);
+ *   timer.complete().with("files", result.getTransferredKeys().size());
+ * }
+ * </pre>
+ */
+public class PhaseTimer implements AutoCloseable {
+
+  private final OperationMetrics metrics;
+  private final OperationPhase phase;
+  private final String target;
+  private final long startNanos = System.nanoTime();
+  private final Map<String, Object> attributes = new LinkedHashMap<>();
+  private boolean completed;
+  private boolean closed;
+
+  PhaseTimer(OperationMetrics metrics, OperationPhase phase, String target) {
+    this.metrics = metrics;
+    this.phase = phase;
+    this.target = target;
+  }
+
+  /**
+   * Marks the phase as succeeded
+   * @return this timer
+   */
+  public PhaseTimer complete() {
+    completed = true;
+    return this;
+  }
+
+  /**
+   * Adds an attribute reported with the phase
+   * @param key the attribute name
+   * @param value the attribute value
+   * @return this timer
+   */
+  public PhaseTimer with(String key, Object value) {
+    attributes.put(key, value);
+    return this;
+  }
+
+  /**
+   * @return the milliseconds since the phase started
+   */
+  public long getElapsedMillis() {
+    return (System.nanoTime() - startNanos) / 1_000_000L;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      metrics.phaseCompleted(phase, target, getElapsedMillis(), completed, attributes);
+    }
+  }
+}
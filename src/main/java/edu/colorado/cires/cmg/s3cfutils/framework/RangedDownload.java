@@ -0,0 +1,348 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.util.BinaryUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads an object with concurrent ranged GETs of a fixed part size. The target file is preallocated to the size of
+ * the object and each part is written at its own offset with positional writes, so parts complete in any order. Every
+ * GET is pinned to the ETag seen when the download started, so an object replaced during the download fails it instead
+ * of mixing versions. A part that fails while its body is read is retried on its own. Parts that are written are
+ * recorded in the {@link TransferStateFile} of the target, so an interrupted download only fetches the missing parts.
+ * When the MD5 of the object is known the whole file is checked against it at the end. An object that fits in a single
+ * part is fetched with one plain GET and checked while it is written, without a state file.
+ */
+class RangedDownload {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RangedDownload.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long RETRY_BASE_DELAY_MILLIS = 200L;
+
+  private final AmazonS3 s3;
+  private final ExecutorService executor;
+  private final long partSize;
+  private final int partRetries;
+
+  /**
+   * @param s3 the {@link AmazonS3} client
+   * @param executor runs the part downloads, its size bounds the parallelism of each download
+   * @param partSize the size in bytes of each ranged GET
+   * @param partRetries the number of times a failed part is retried
+   */
+  RangedDownload(AmazonS3 s3, ExecutorService executor, long partSize, int partRetries) {
+    this.s3 = s3;
+    this.executor = executor;
+    this.partSize = partSize;
+    this.partRetries = partRetries;
+  }
+
+  /**
+   * Downloads an object to a file, continuing a previous download of the same object version to the same file
+   * @param bucket the bucket name
+   * @param key the object key
+   * @param target the file to write
+   */
+  void download(String bucket, String key, Path target) {
+    ObjectMetadata metadata = s3.getObjectMetadata(bucket, key);
+    if (metadata.getContentLength() <= partSize) {
+      downloadWhole(bucket, key, metadata.getETag(), target);
+    } else {
+      downloadParts(bucket, key, metadata, target);
+    }
+  }
+
+  /**
+   * Downloads an object whose size and ETag are already known from a listing. An object that fits in a single part is
+   * fetched without a HEAD request.
+   * @param bucket the bucket name
+   * @param key the object key
+   * @param length the size of the object
+   * @param eTag the ETag of the object
+   * @param target the file to write
+   */
+  void download(String bucket, String key, long length, String eTag, Path target) {
+    if (length <= partSize) {
+      downloadWhole(bucket, key, eTag, target);
+    } else {
+      download(bucket, key, target);
+    }
+  }
+
+  /**
+   * Downloads an object with a single GET, checking its MD5 while it is written when the MD5 is known
+   */
+  private void downloadWhole(String bucket, String key, String eTag, Path target) {
+    TransferStateFile.forDownload(bucket, key, target).delete();
+    for (int attempt = 0; ; attempt++) {
+      try {
+        readWhole(bucket, key, eTag, target);
+        return;
+      } catch (IOException | AmazonClientException e) {
+        if (attempt == partRetries || !isRetryable(e)) {
+          throw new RuntimeException("Unable to download file", e);
+        }
+        LOGGER.warn("Retrying s3://{}/{}: {}", bucket, key, e.toString());
+        try {
+          Thread.sleep(RETRY_BASE_DELAY_MILLIS << attempt);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Unable to download file", interrupted);
+        }
+      }
+    }
+  }
+
+  private void readWhole(String bucket, String key, String eTag, Path target) throws IOException {
+    GetObjectRequest request = new GetObjectRequest(bucket, key);
+    if (eTag != null) {
+      request.withMatchingETagConstraint(eTag);
+    }
+    S3Object object = s3.getObject(request);
+    if (object == null) {
+      throw new IllegalStateException("Object s3://" + bucket + "/" + key + " was modified during the download");
+    }
+    ObjectMetadata metadata = object.getObjectMetadata();
+    MessageDigest md5 = ContentDigests.md5();
+    S3ObjectInputStream in = object.getObjectContent();
+    boolean complete = false;
+    long written = 0L;
+    try (OutputStream out = Files.newOutputStream(target)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        md5.update(buffer, 0, read);
+        out.write(buffer, 0, read);
+        written += read;
+      }
+      complete = true;
+    } finally {
+      if (!complete) {
+        in.abort();
+      }
+      in.close();
+    }
+    if (written != metadata.getContentLength()) {
+      throw new IOException("Premature end of s3://" + bucket + "/" + key + " at " + written + " of " + metadata.getContentLength());
+    }
+    String expected = ContentDigests.knownMd5Hex(metadata);
+    String actual = BinaryUtils.toHex(md5.digest());
+    if (expected != null && !expected.equalsIgnoreCase(actual)) {
+      Files.deleteIfExists(target);
+      throw new IllegalStateException("Checksum mismatch for s3://" + bucket + "/" + key + ": expected " + expected + " but was " + actual);
+    }
+  }
+
+  /**
+   * Downloads an object with concurrent ranged GETs, recording the written parts in the state file of the target
+   */
+  private void downloadParts(String bucket, String key, ObjectMetadata metadata, Path target) {
+    long length = metadata.getContentLength();
+    String eTag = metadata.getETag();
+    int partCount = (int) ((length + partSize - 1) / partSize);
+
+    TransferStateFile state = TransferStateFile.forDownload(bucket, key, target);
+    Set<Integer> completed = state.readCompletedParts(eTag, length, partSize);
+    if (!completed.isEmpty() && !hasLength(target, length)) {
+      completed.clear();
+    }
+    if (!completed.isEmpty()) {
+      LOGGER.info("Resuming Download: s3://{}/{} {} of {} parts already written", bucket, key, completed.size(), partCount);
+    }
+    Set<Integer> written = Collections.synchronizedSet(new TreeSet<>(completed));
+
+    // parts are stopped with this flag rather than interrupts, an interrupt would close the shared channel
+    AtomicBoolean aborted = new AtomicBoolean();
+    List<Future<?>> futures = new ArrayList<>(partCount);
+    try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+      file.setLength(length);
+      FileChannel channel = file.getChannel();
+      try {
+        for (int part = 0; part < partCount; part++) {
+          if (!completed.contains(part)) {
+            int partNumber = part;
+            futures.add(executor.submit(() -> {
+              if (aborted.get()) {
+                return null;
+              }
+              try {
+                downloadPart(bucket, key, eTag, channel, partNumber, length, aborted);
+              } catch (Exception e) {
+                aborted.set(true);
+                throw e;
+              }
+              synchronized (written) {
+                written.add(partNumber);
+                state.writeCompletedParts(eTag, length, partSize, written);
+              }
+              return null;
+            }));
+          }
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException | ExecutionException | RuntimeException e) {
+        // stop the remaining parts while the channel is still open
+        abort(futures, aborted);
+        throw e;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Unable to download file", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Unable to download file", e.getCause());
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to download file", e);
+    }
+
+    verify(bucket, key, metadata, target, state);
+    state.delete();
+  }
+
+  /**
+   * Downloads one part, retrying failures that are not rejections by S3
+   */
+  private void downloadPart(String bucket, String key, String eTag, FileChannel channel, int partNumber, long length,
+      AtomicBoolean aborted) throws IOException, InterruptedException {
+    long first = partNumber * partSize;
+    long last = Math.min(first + partSize, length) - 1L;
+    for (int attempt = 0; ; attempt++) {
+      try {
+        readRange(bucket, key, eTag, channel, first, last, aborted);
+        return;
+      } catch (IOException | AmazonClientException e) {
+        if (attempt == partRetries || !isRetryable(e) || aborted.get()) {
+          throw e;
+        }
+        LOGGER.warn("Retrying part {} of s3://{}/{}: {}", partNumber, bucket, key, e.toString());
+        Thread.sleep(RETRY_BASE_DELAY_MILLIS << attempt);
+      }
+    }
+  }
+
+  private static boolean isRetryable(Exception e) {
+    if (e instanceof AmazonServiceException) {
+      AmazonServiceException serviceException = (AmazonServiceException) e;
+      return serviceException.getStatusCode() >= 500 || serviceException.getStatusCode() == 429
+          || "SlowDown".equals(serviceException.getErrorCode());
+    }
+    return true;
+  }
+
+  private void readRange(String bucket, String key, String eTag, FileChannel channel, long first, long last, AtomicBoolean aborted)
+      throws IOException {
+    GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(first, last);
+    if (eTag != null) {
+      request.withMatchingETagConstraint(eTag);
+    }
+    S3Object object = s3.getObject(request);
+    if (object == null) {
+      throw new IllegalStateException("Object s3://" + bucket + "/" + key + " was modified during the download");
+    }
+    S3ObjectInputStream in = object.getObjectContent();
+    boolean complete = false;
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long position = first;
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        if (aborted.get()) {
+          throw new IOException("Download of s3://" + bucket + "/" + key + " aborted");
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+        while (bytes.hasRemaining()) {
+          position += channel.write(bytes, position);
+        }
+      }
+      if (position != last + 1L) {
+        throw new IOException("Premature end of range " + first + "-" + last + " of s3://" + bucket + "/" + key + " at " + position);
+      }
+      complete = true;
+    } finally {
+      if (!complete) {
+        // do not drain the rest of a failed body
+        in.abort();
+      }
+      in.close();
+    }
+  }
+
+  /**
+   * Checks the downloaded file against the MD5 of the object. A mismatching file and its state are removed.
+   */
+  private static void verify(String bucket, String key, ObjectMetadata metadata, Path target, TransferStateFile state) {
+    String expected = ContentDigests.knownMd5Hex(metadata);
+    if (expected == null) {
+      LOGGER.debug("No MD5 known for s3://{}/{}, skipping checksum", bucket, key);
+      return;
+    }
+    String actual = ContentDigests.md5Hex(target);
+    if (!expected.equalsIgnoreCase(actual)) {
+      state.delete();
+      try {
+        Files.deleteIfExists(target);
+      } catch (IOException e) {
+        LOGGER.warn("Unable to delete '{}'", target, e);
+      }
+      throw new IllegalStateException("Checksum mismatch for s3://" + bucket + "/" + key + ": expected " + expected + " but was " + actual);
+    }
+  }
+
+  private static boolean hasLength(Path file, long length) {
+    try {
+      return Files.isRegularFile(file) && Files.size(file) == length;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Stops the parts that have not started and waits for the running parts to stop
+   */
+  private static void abort(List<Future<?>> futures, AtomicBoolean aborted) {
+    aborted.set(true);
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException | CancellationException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads a byte range of an object in chunks of a fixed size. While one chunk is read the following chunks are fetched
+ * in the background, each with its own ranged GET pinned to the ETag of the object.
+ */
+class ReadAheadInputStream extends InputStream {
+
+  private final AmazonS3 s3;
+  private final Executor executor;
+  private final String bucket;
+  private final String key;
+  private final String eTag;
+  private final long end;
+  private final int chunkSize;
+  private final int chunks;
+  private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+  private long nextChunkPosition;
+  private byte[] chunk = new byte[0];
+  private int chunkOffset;
+  private boolean closed;
+
+  /**
+   * @param s3 the {@link AmazonS3} client
+   * @param executor fetches the chunks
+   * @param bucket the bucket name
+   * @param key the object key
+   * @param eTag the ETag every chunk must match
+   * @param position the offset of the first byte to read
+   * @param end the offset after the last byte to read
+   * @param chunkSize the size in bytes of each chunk
+   * @param chunks the number of chunks fetched ahead of the one being read
+   */
+  ReadAheadInputStream(AmazonS3 s3, Executor executor, String bucket, String key, String eTag, long position, long end, int chunkSize,
+      int chunks) {
+    this.s3 = s3;
+    this.executor = executor;
+    this.bucket = bucket;
+    this.key = key;
+    this.eTag = eTag;
+    this.end = end;
+    this.chunkSize = chunkSize;
+    this.chunks = chunks;
+    this.nextChunkPosition = position;
+    fetchAhead();
+  }
+
+  /**
+   * Requests chunks until the read-ahead window is full or the range is exhausted
+   */
+  private void fetchAhead() {
+    while (pending.size() < chunks && nextChunkPosition < end) {
+      long first = nextChunkPosition;
+      long last = Math.min(first + chunkSize, end) - 1L;
+      pending.add(CompletableFuture.supplyAsync(() -> fetch(first, last), executor));
+      nextChunkPosition = last + 1L;
+    }
+  }
+
+  private byte[] fetch(long first, long last) {
+    GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(first, last);
+    if (eTag != null) {
+      request.withMatchingETagConstraint(eTag);
+    }
+    S3Object object = s3.getObject(request);
+    if (object == null) {
+      throw new IllegalStateException("Object s3://" + bucket + "/" + key + " was modified while it was read");
+    }
+    byte[] bytes = new byte[(int) (last - first + 1L)];
+    try (S3ObjectInputStream in = object.getObjectContent()) {
+      IOUtils.readFully(in, bytes);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read s3://" + bucket + "/" + key + " at " + first, e);
+    }
+    return bytes;
+  }
+
+  /**
+   * Makes the next chunk current
+   * @return false at the end of the range
+   */
+  private boolean nextChunk() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (chunkOffset == chunk.length) {
+      CompletableFuture<byte[]> next = pending.poll();
+      if (next == null) {
+        return false;
+      }
+      fetchAhead();
+      try {
+        chunk = next.join();
+      } catch (CompletionException e) {
+        throw new IOException("Unable to read s3://" + bucket + "/" + key, e.getCause());
+      }
+      chunkOffset = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    return chunk[chunkOffset++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    int read = Math.min(len, chunk.length - chunkOffset);
+    System.arraycopy(chunk, chunkOffset, b, off, read);
+    chunkOffset += read;
+    return read;
+  }
+
+  @Override
+  public int available() {
+    return chunk.length - chunkOffset;
+  }
+
+  /**
+   * Abandons the chunks that are still being fetched
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (CompletableFuture<byte[]> future : pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+    chunk = new byte[0];
+    chunkOffset = 0;
+  }
+}
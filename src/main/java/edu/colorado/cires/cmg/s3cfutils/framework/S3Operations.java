@@ -1,8 +1,27 @@
 package edu.colorado.cires.cmg.s3cfutils.framework;
 
+import com.amazonaws.AmazonServiceException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
 
 /**
  * Operations for interaction with S3 objects
@@ -18,6 +37,65 @@ public interface S3Operations {
      */
     void copyObject(String sourceBucket, String sourceKey, String targetBucket, String targetKey);
 
+    /**
+     * Copies objects from a source bucket to a target bucket concurrently with server side copies. Large objects are
+     * copied in parts. The default implementation copies one object at a time with
+     * {@link #copyObject(String, String, String, String)}.
+     * @param sourceBucket the source bucket name
+     * @param targetBucket the target bucket name
+     * @param keys target keys by source key
+     * @return {@link CopyResult} with the copied keys and a failure for each object that could not be copied
+     */
+    default CopyResult copyObjects(String sourceBucket, String targetBucket, Map<String, String> keys) {
+        List<String> copiedKeys = new ArrayList<>(keys.size());
+        List<CopyResult.Failure> failures = new ArrayList<>();
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            try {
+                this.copyObject(sourceBucket, entry.getKey(), targetBucket, entry.getValue());
+                copiedKeys.add(entry.getKey());
+            } catch (AmazonServiceException e) {
+                failures.add(new CopyResult.Failure(entry.getKey(), entry.getValue(), e.getErrorCode(), e.getErrorMessage()));
+            }
+        }
+        return new CopyResult(copiedKeys, 0L, failures, new DeleteResult(Collections.emptyList(), Collections.emptyList()));
+    }
+
+    /**
+     * Moves objects between buckets. Objects are copied with {@link #copyObjects(String, String, Map)} and the sources of
+     * the copied objects are deleted in batches, sources that failed to copy are kept.
+     * @param sourceBucket the source bucket name
+     * @param targetBucket the target bucket name
+     * @param keys target keys by source key
+     * @return {@link CopyResult} with the copied keys, copy failures and the result of deleting the sources
+     */
+    default CopyResult moveObjects(String sourceBucket, String targetBucket, Map<String, String> keys) {
+        CopyResult result = this.copyObjects(sourceBucket, targetBucket, keys);
+        List<String> sourceKeys = new ArrayList<>(result.getCopiedKeys().size());
+        for (String sourceKey : result.getCopiedKeys()) {
+            if (!sourceBucket.equals(targetBucket) || !sourceKey.equals(keys.get(sourceKey))) {
+                sourceKeys.add(sourceKey);
+            }
+        }
+        return result.withDeleteResult(this.deleteObjectsWithResult(sourceBucket, sourceKeys));
+    }
+
+    /**
+     * Copies every object under a prefix to another prefix, replacing the source prefix of each key with the target
+     * prefix
+     * @param sourceBucket the source bucket name
+     * @param sourcePrefix the prefix of the objects to copy
+     * @param targetBucket the target bucket name
+     * @param targetPrefix the prefix of the copies
+     * @return {@link CopyResult} with the copied keys and a failure for each object that could not be copied
+     */
+    default CopyResult copyPrefix(String sourceBucket, String sourcePrefix, String targetBucket, String targetPrefix) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String sourceKey : this.listObjects(sourceBucket, sourcePrefix)) {
+            keys.put(sourceKey, targetPrefix + sourceKey.substring(sourcePrefix.length()));
+        }
+        return this.copyObjects(sourceBucket, targetBucket, keys);
+    }
+
     /**
      * Deletes objects from a bucket
      * @param bucket the bucket name
@@ -26,6 +104,34 @@ public interface S3Operations {
      */
     List<String> deleteObjects(String bucket, List<String> keys);
 
+    /**
+     * Deletes objects from a bucket and reports the keys that could not be deleted instead of failing. Any number of
+     * keys may be given. The default implementation deletes them with {@link #deleteObjects(String, List)}.
+     * @param bucket the bucket name
+     * @param keys locations of objects to delete from the bucket
+     * @return {@link DeleteResult} with the deleted keys and a failure for each key that S3 reported as not deleted
+     */
+    default DeleteResult deleteObjectsWithResult(String bucket, List<String> keys) {
+        return new DeleteResult(this.deleteObjects(bucket, keys), Collections.emptyList());
+    }
+
+    /**
+     * Empties a bucket of every object, including all object versions and delete markers of versioned buckets. The
+     * default implementation deletes the current objects listed by {@link #listObjects(String)} and reports once.
+     * @param bucket the bucket name
+     * @param progressListener receives periodic {@link EmptyBucketStatus} reports and the final status
+     * @return the final {@link EmptyBucketStatus}, the bucket is empty if it has no failures
+     */
+    default EmptyBucketStatus emptyBucket(String bucket, Consumer<EmptyBucketStatus> progressListener) {
+        long start = System.currentTimeMillis();
+        List<String> keys = this.listObjects(bucket);
+        DeleteResult result = this.deleteObjectsWithResult(bucket, keys);
+        EmptyBucketStatus status = new EmptyBucketStatus(bucket, keys.size(), result.getDeletedKeys().size(), result.getFailures(),
+            System.currentTimeMillis() - start, true);
+        progressListener.accept(status);
+        return status;
+    }
+
     /**
      * Returns true if a given object exists within a bucket
      * @param bucket the bucket name
@@ -49,6 +155,76 @@ public interface S3Operations {
      */
     List<String> listObjects(String bucket);
 
+    /**
+     * Lists summaries of objects matching a prefix within a bucket. The default implementation only knows the keys
+     * listed by {@link #listObjects(String, String)}, its summaries have a size of -1 and no ETag or last modified time.
+     * @param bucket the bucket name
+     * @param prefix the object prefix
+     * @return {@link ObjectSummary} for each object matching the prefix within the bucket
+     */
+    default List<ObjectSummary> listObjectSummaries(String bucket, String prefix) {
+        List<String> keys = this.listObjects(bucket, prefix == null ? "" : prefix);
+        List<ObjectSummary> summaries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            summaries.add(new ObjectSummary(key, -1L, null, null));
+        }
+        return summaries;
+    }
+
+    /**
+     * Lazily iterates over objects matching a prefix within a bucket, fetching each page of the listing on demand. The
+     * default implementation lists every object first with {@link #listObjectSummaries(String, String)}.
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @return {@link Iterator} of {@link ObjectSummary}
+     */
+    default Iterator<ObjectSummary> iterateObjects(String bucket, String prefix) {
+        return listObjectSummaries(bucket, prefix == null ? "" : prefix).iterator();
+    }
+
+    /**
+     * Lazily streams objects matching a prefix within a bucket, fetching each page of the listing on demand. The stream
+     * should be closed when it is not fully consumed. The default implementation lists every object first with
+     * {@link #listObjectSummaries(String, String)}.
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @return {@link Stream} of {@link ObjectSummary}
+     */
+    default Stream<ObjectSummary> streamObjects(String bucket, String prefix) {
+        return listObjectSummaries(bucket, prefix == null ? "" : prefix).stream();
+    }
+
+    /**
+     * Streams objects matching a prefix within a bucket, listing the top-level partitions below the prefix concurrently.
+     * The partitions are discovered with a "/" delimiter listing. This speeds up listing buckets with many keys spread
+     * over several partitions, a listing of a single partition is not faster than {@link #streamObjects(String, String)}.
+     * The default implementation lists sequentially with {@link #streamObjects(String, String)}, in key order.
+     * The stream should be closed when it is not fully consumed.
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @param ordered if true objects are streamed in key order, otherwise each partition is streamed as soon as it has
+     * been listed
+     * @return {@link Stream} of {@link ObjectSummary}
+     */
+    default Stream<ObjectSummary> streamObjectsPartitioned(String bucket, String prefix, boolean ordered) {
+        return streamObjects(bucket, prefix);
+    }
+
+    /**
+     * Lists summaries of objects matching a prefix within a bucket, listing the top-level partitions below the prefix
+     * concurrently
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @param ordered if true objects are listed in key order
+     * @return {@link ObjectSummary} for each object matching the prefix within the bucket
+     * @see #streamObjectsPartitioned(String, String, boolean)
+     */
+    default List<ObjectSummary> listObjectSummariesPartitioned(String bucket, String prefix, boolean ordered) {
+        try (Stream<ObjectSummary> objects = streamObjectsPartitioned(bucket, prefix, ordered)) {
+            return objects.collect(Collectors.toList());
+        }
+    }
+
     /**
      * Uploads a directory to a bucket
      * @param dir the directory to upload to the bucket
@@ -56,6 +232,63 @@ public interface S3Operations {
      */
     void uploadDirectoryToBucket(Path dir, String bucket);
 
+    /**
+     * Synchronizes a directory with a bucket. Only new or changed files are uploaded and only objects no longer present
+     * in the directory are deleted, files are compared by size and MD5. The default implementation empties the bucket
+     * and uploads the whole directory with {@link #uploadDirectoryToBucket(Path, String)}, and returns an empty result.
+     * @param dir the directory to synchronize with the bucket
+     * @param bucket the bucket name
+     * @return {@link SyncResult} describing the uploaded, deleted and unchanged objects
+     */
+    default SyncResult syncDirectoryToBucket(Path dir, String bucket) {
+        this.emptyBucket(bucket, status -> { });
+        this.uploadDirectoryToBucket(dir, bucket);
+        return new SyncResult(Collections.emptyList(), Collections.emptyList(), 0, 0L);
+    }
+
+    /**
+     * Synchronizes the entries of a zip file with a bucket without extracting the zip. Entries are streamed to their
+     * keys in parallel, only new or changed entries are uploaded and only objects no longer present in the zip are
+     * deleted, entries are compared by size and MD5. The default implementation extracts the entries to a temporary
+     * directory and synchronizes it with {@link #syncDirectoryToBucket(Path, String)}.
+     * @param zip the zip file to synchronize with the bucket
+     * @param entryPrefix only entries starting with this prefix are synchronized, the prefix is removed from their keys
+     * @param bucket the bucket name
+     * @return {@link SyncResult} describing the uploaded, deleted and unchanged objects
+     */
+    default SyncResult syncZipToBucket(Path zip, String entryPrefix, String bucket) {
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("s3-operations-zip-");
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create directory for zip: " + zip, e);
+        }
+        try {
+            try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || !entry.getName().startsWith(entryPrefix) || entry.getName().equals(entryPrefix)) {
+                        continue;
+                    }
+                    Path file = dir.resolve(entry.getName().substring(entryPrefix.length())).normalize();
+                    if (!file.startsWith(dir)) {
+                        throw new IllegalStateException("Zip entry outside of the bundle: " + entry.getName());
+                    }
+                    Files.createDirectories(file.getParent());
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        Files.copy(in, file);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to extract zip file: " + zip, e);
+            }
+            return this.syncDirectoryToBucket(dir, bucket);
+        } finally {
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+    }
+
     /**
      * Uploads an object to a bucket
      * @param source {@link Path} to source object
@@ -72,6 +305,124 @@ public interface S3Operations {
      */
     void download(String sourceBucket, String sourceKey, Path target);
 
+    /**
+     * Downloads every object under a prefix to a directory in parallel, keeping the key relative to the prefix as the
+     * relative path. Objects whose local file already matches by size and last modified time, or by size and MD5, are
+     * skipped. Files in the directory without an object are left in place. The default implementation downloads every
+     * object listed by {@link #listObjects(String, String)} one at a time with {@link #download(String, String, Path)}.
+     * @param bucket the bucket name
+     * @param prefix only objects whose keys start with this prefix are downloaded, or null for the whole bucket
+     * @param dir the directory to download to
+     * @return {@link SyncResult} describing the downloaded and unchanged objects
+     */
+    default SyncResult downloadPrefix(String bucket, String prefix, Path dir) {
+        String keyPrefix = prefix == null ? "" : prefix;
+        Path root = dir.toAbsolutePath().normalize();
+        List<String> transferredKeys = new ArrayList<>();
+        long transferredBytes = 0L;
+        for (String key : this.listObjects(bucket, keyPrefix)) {
+            if (key.endsWith("/")) {
+                // folder placeholder
+                continue;
+            }
+            Path target = root.resolve(key.substring(keyPrefix.length())).normalize();
+            if (target.equals(root) || !target.startsWith(root)) {
+                throw new IllegalStateException("Key does not resolve to a file within " + root + ": " + key);
+            }
+            try {
+                Files.createDirectories(target.getParent());
+                this.download(bucket, key, target);
+                transferredBytes += Files.size(target);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to download object: s3://" + bucket + "/" + key, e);
+            }
+            transferredKeys.add(key);
+        }
+        return new SyncResult(transferredKeys, Collections.emptyList(), 0, transferredBytes);
+    }
+
+    /**
+     * Opens an object for reading without writing it to disk. The default implementation downloads the object to a
+     * temporary file with {@link #download(String, String, Path)} and deletes the file when the stream is closed.
+     * @param bucket the bucket name
+     * @param key the object key
+     * @return {@link InputStream} of the object content, which must be closed
+     */
+    default InputStream openObject(String bucket, String key) {
+        Path file;
+        try {
+            file = Files.createTempFile("s3-operations-", ".object");
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create file for object: s3://" + bucket + "/" + key, e);
+        }
+        boolean opened = false;
+        try {
+            this.download(bucket, key, file);
+            InputStream in = new FilterInputStream(Files.newInputStream(file)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            };
+            opened = true;
+            return in;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open object: s3://" + bucket + "/" + key, e);
+        } finally {
+            if (!opened) {
+                FileUtils.deleteQuietly(file.toFile());
+            }
+        }
+    }
+
+    /**
+     * Opens a byte range of an object for reading without writing it to disk, optionally fetching chunks ahead of the
+     * reader. The default implementation reads whole objects with {@link #openObject(String, String)} and does not
+     * support ranges or read-ahead.
+     * @param bucket the bucket name
+     * @param key the object key
+     * @param options {@link ObjectReadOptions} with the range and read-ahead
+     * @return {@link InputStream} of the object content, which must be closed
+     */
+    default InputStream openObject(String bucket, String key, ObjectReadOptions options) {
+        if (options.isRanged() || options.getReadAheadChunks() > 0) {
+            throw new UnsupportedOperationException("Ranged and read-ahead reads are not supported by " + getClass().getName());
+        }
+        return this.openObject(bucket, key);
+    }
+
+    /**
+     * Opens a byte range of an object as a channel
+     * @param bucket the bucket name
+     * @param key the object key
+     * @param options {@link ObjectReadOptions} with the range and read-ahead
+     * @return {@link ReadableByteChannel} of the object content, which must be closed
+     * @see #openObject(String, String, ObjectReadOptions)
+     */
+    default ReadableByteChannel openObjectChannel(String bucket, String key, ObjectReadOptions options) {
+        return Channels.newChannel(openObject(bucket, key, options));
+    }
+
+    /**
+     * Parses a JSON object straight from the object content
+     * @param bucket the bucket name
+     * @param key the object key
+     * @param type the type to parse
+     * @param <T> the type to parse
+     * @return the parsed object
+     */
+    default <T> T readJson(String bucket, String key, TypeReference<T> type) {
+        try (InputStream in = openObject(bucket, key)) {
+            return SharedObjectMapper.OBJECT_MAPPER.readValue(in, type);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read JSON: s3://" + bucket + "/" + key, e);
+        }
+    }
+
     /**
      * Moves an object between buckets
      * @param sourceBucket the source bucket name
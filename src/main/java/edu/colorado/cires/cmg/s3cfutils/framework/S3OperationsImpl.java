@@ -5,79 +5,514 @@ package edu.colorado.cires.cmg.s3cfutils.framework;
 // (powered by FernFlower decompiler)
 //
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest;
-import com.amazonaws.services.s3.model.DeleteObjectsResult;
-import com.amazonaws.services.s3.model.ObjectListing;
-import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
-import com.amazonaws.services.s3.model.DeleteObjectsResult.DeletedObject;
-import com.amazonaws.services.s3.transfer.Download;
+import com.amazonaws.services.s3.transfer.Copy;
 import com.amazonaws.services.s3.transfer.MultipleFileUpload;
+import com.amazonaws.services.s3.transfer.PauseResult;
+import com.amazonaws.services.s3.transfer.PersistableUpload;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.transfer.exception.PauseException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.colorado.cires.cmg.s3out.DefaultContentTypeResolver;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
 
 /**
  * Operations for interaction with S3 objects
  */
-public class S3OperationsImpl implements S3Operations {
+public class S3OperationsImpl implements S3Operations, AutoCloseable {
+
+    /**
+     * Default number of threads used by the shared {@link TransferManager}
+     */
+    public static final int DEFAULT_TRANSFER_THREADS = 10;
+
+    /**
+     * Default size in bytes above which uploads are split into parts
+     */
+    public static final long DEFAULT_MULTIPART_UPLOAD_THRESHOLD = 16L * 1024L * 1024L;
+
+    /**
+     * Default minimum size in bytes of each part of a multipart upload
+     */
+    public static final long DEFAULT_MINIMUM_UPLOAD_PART_SIZE = 5L * 1024L * 1024L;
+
+    /**
+     * Default size in bytes above which copies are split into parts copied in parallel
+     */
+    public static final long DEFAULT_MULTIPART_COPY_THRESHOLD = 128L * 1024L * 1024L;
+
+    /**
+     * Default minimum size in bytes of each part of a multipart copy
+     */
+    public static final long DEFAULT_MULTIPART_COPY_PART_SIZE = 64L * 1024L * 1024L;
+
+    /**
+     * Default size in bytes of each ranged GET of a download
+     */
+    public static final long DEFAULT_DOWNLOAD_PART_SIZE = 16L * 1024L * 1024L;
+
+    /**
+     * Default number of threads downloading parts, shared by all downloads
+     */
+    public static final int DEFAULT_DOWNLOAD_THREADS = 8;
+
+    /**
+     * Default number of times a failed download part is retried
+     */
+    public static final int DEFAULT_DOWNLOAD_PART_RETRIES = 3;
+
+    /**
+     * Default number of threads used for concurrent requests such as batch deletes
+     */
+    public static final int DEFAULT_REQUEST_THREADS = 8;
+
+    /**
+     * Maximum number of keys S3 accepts in a single delete request
+     */
+    public static final int MAX_DELETE_BATCH_SIZE = 1000;
+
+    /**
+     * Default number of concurrent delete workers used to empty a bucket
+     */
+    public static final int DEFAULT_EMPTY_BUCKET_WORKERS = 4;
+
+    private static final long EMPTY_BUCKET_PROGRESS_INTERVAL_MILLIS = 5000L;
+
+    private static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
     private final AmazonS3 s3;
+    private final int requestThreads;
+    private final int emptyBucketWorkers;
+    private final int transferThreads;
+    private final long multipartUploadThreshold;
+    private final long minimumUploadPartSize;
+    private final long multipartCopyThreshold;
+    private final long multipartCopyPartSize;
+    private final int downloadThreads;
+    private final long downloadPartSize;
+    private final int downloadPartRetries;
+    private TransferManager transferManager;
+    private ExecutorService requestExecutor;
+    private ExecutorService downloadExecutor;
+    private ExecutorService deleteExecutor;
+    private ExecutorService prefixExecutor;
+    private boolean closed;
 
     public S3OperationsImpl(AmazonS3 s3) {
-        this.s3 = s3;
+        this(Builder.configure().withS3(s3));
+    }
+
+    private S3OperationsImpl(Builder builder) {
+        this.s3 = Objects.requireNonNull(builder.s3, "s3 is required");
+        this.requestThreads = builder.requestThreads;
+        this.emptyBucketWorkers = builder.emptyBucketWorkers;
+        this.transferThreads = builder.transferThreads;
+        this.multipartUploadThreshold = builder.multipartUploadThreshold;
+        this.minimumUploadPartSize = builder.minimumUploadPartSize;
+        this.multipartCopyThreshold = builder.multipartCopyThreshold;
+        this.multipartCopyPartSize = builder.multipartCopyPartSize;
+        this.downloadThreads = builder.downloadThreads;
+        this.downloadPartSize = builder.downloadPartSize;
+        this.downloadPartRetries = builder.downloadPartRetries;
+    }
+
+    /**
+     * Gets the {@link TransferManager} shared by all transfers, creating it on first use. Reusing it keeps its thread
+     * pool and the client's connections warm across calls.
+     * @return the shared {@link TransferManager}
+     */
+    private synchronized TransferManager transferManager() {
+        if (closed) {
+            throw new IllegalStateException("S3 operations have been closed");
+        }
+        if (transferManager == null) {
+            ThreadFactory threadFactory = daemonThreadFactory("s3-operations-transfer-");
+            transferManager = TransferManagerBuilder.standard()
+                .withS3Client(this.s3)
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(transferThreads, threadFactory))
+                .withMultipartUploadThreshold(multipartUploadThreshold)
+                .withMinimumUploadPartSize(minimumUploadPartSize)
+                .withMultipartCopyThreshold(multipartCopyThreshold)
+                .withMultipartCopyPartSize(multipartCopyPartSize)
+                .build();
+        }
+        return transferManager;
+    }
+
+    /**
+     * Gets the bounded executor used for concurrent requests, creating it on first use
+     * @return the shared request {@link ExecutorService}
+     */
+    private synchronized ExecutorService requestExecutor() {
+        if (closed) {
+            throw new IllegalStateException("S3 operations have been closed");
+        }
+        if (requestExecutor == null) {
+            requestExecutor = Executors.newFixedThreadPool(requestThreads, daemonThreadFactory("s3-operations-request-"));
+        }
+        return requestExecutor;
+    }
+
+    /**
+     * Gets the executor downloading parts, creating it on first use. It is separate from the request executor so
+     * downloads started from request threads cannot wait on their own pool.
+     * @return the shared download {@link ExecutorService}
+     */
+    private synchronized ExecutorService downloadExecutor() {
+        if (closed) {
+            throw new IllegalStateException("S3 operations have been closed");
+        }
+        if (downloadExecutor == null) {
+            downloadExecutor = Executors.newFixedThreadPool(downloadThreads, daemonThreadFactory("s3-operations-download-"));
+        }
+        return downloadExecutor;
     }
 
     /**
-     * Copies object from a source bucket to a target bucket
+     * Gets the executor sending delete batches, creating it on first use. It is separate from the request executor so
+     * deletes started from request threads cannot wait on their own pool.
+     * @return the shared delete {@link ExecutorService}
+     */
+    private synchronized ExecutorService deleteExecutor() {
+        if (closed) {
+            throw new IllegalStateException("S3 operations have been closed");
+        }
+        if (deleteExecutor == null) {
+            deleteExecutor = Executors.newFixedThreadPool(requestThreads, daemonThreadFactory("s3-operations-delete-"));
+        }
+        return deleteExecutor;
+    }
+
+    /**
+     * Gets the executor downloading the objects of a prefix, creating it on first use. It is separate from the request
+     * executor, which prefetches the listing the downloads are queued from.
+     * @return the shared prefix download {@link ExecutorService}
+     */
+    private synchronized ExecutorService prefixExecutor() {
+        if (closed) {
+            throw new IllegalStateException("S3 operations have been closed");
+        }
+        if (prefixExecutor == null) {
+            prefixExecutor = Executors.newFixedThreadPool(requestThreads, daemonThreadFactory("s3-operations-prefix-"));
+        }
+        return prefixExecutor;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Shuts down the shared {@link TransferManager}, request, download, delete and prefix download executors. The
+     * {@link AmazonS3} client is left open.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (transferManager != null) {
+            transferManager.shutdownNow(false);
+            transferManager = null;
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdownNow();
+            requestExecutor = null;
+        }
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+            downloadExecutor = null;
+        }
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdownNow();
+            deleteExecutor = null;
+        }
+        if (prefixExecutor != null) {
+            prefixExecutor.shutdownNow();
+            prefixExecutor = null;
+        }
+    }
+
+    /**
+     * Copies object from a source bucket to a target bucket with a single copy request. An object larger than the 5 GB
+     * limit of a single copy request is copied in parts in parallel instead.
      * @param sourceBucket the source bucket name
      * @param sourceKey location of object within the source bucket
      * @param targetBucket the target bucket name
      * @param targetKey location of object within the target bucket
      */
     public void copyObject(String sourceBucket, String sourceKey, String targetBucket, String targetKey) {
-        this.s3.copyObject(sourceBucket, sourceKey, targetBucket, targetKey);
+        try {
+            this.copy(sourceBucket, sourceKey, targetBucket, targetKey, -1L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unable to copy object", e);
+        }
     }
 
     /**
-     * Deletes objects from a bucket
+     * Copies objects from a source bucket to a target bucket. As many objects as there are request threads are copied at
+     * a time, with at most twice as many queued, each with a single copy request or in parts as
+     * {@link #copyObject(String, String, String, String)} does.
+     * @param sourceBucket the source bucket name
+     * @param targetBucket the target bucket name
+     * @param keys target keys by source key
+     * @return {@link CopyResult} with the copied keys and a failure for each object that could not be copied
+     */
+    public CopyResult copyObjects(String sourceBucket, String targetBucket, Map<String, String> keys) {
+        return this.copyObjects(sourceBucket, targetBucket, keys, Collections.emptyMap());
+    }
+
+    /**
+     * Copies every object under a prefix to another prefix. The sizes from the listing let objects above the multipart
+     * copy threshold be copied in parallel parts and all others with a single copy request.
+     * @param sourceBucket the source bucket name
+     * @param sourcePrefix the prefix of the objects to copy
+     * @param targetBucket the target bucket name
+     * @param targetPrefix the prefix of the copies
+     * @return {@link CopyResult} with the copied keys and a failure for each object that could not be copied
+     */
+    @Override
+    public CopyResult copyPrefix(String sourceBucket, String sourcePrefix, String targetBucket, String targetPrefix) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        Map<String, Long> sizes = new HashMap<>();
+        try (Stream<ObjectSummary> objects = this.streamObjects(sourceBucket, sourcePrefix)) {
+            objects.forEach(summary -> {
+                keys.put(summary.getKey(), targetPrefix + summary.getKey().substring(sourcePrefix.length()));
+                sizes.put(summary.getKey(), summary.getSize());
+            });
+        }
+        return this.copyObjects(sourceBucket, targetBucket, keys, sizes);
+    }
+
+    private CopyResult copyObjects(String sourceBucket, String targetBucket, Map<String, String> keys, Map<String, Long> sizes) {
+        ExecutorService executor = this.requestExecutor();
+        Semaphore queued = new Semaphore(this.requestThreads * 2);
+        Map<String, Future<Long>> futures = new LinkedHashMap<>();
+        List<String> copiedKeys = new ArrayList<>(keys.size());
+        List<CopyResult.Failure> failures = new ArrayList<>();
+        long copiedBytes = 0L;
+        try {
+            for (Map.Entry<String, String> entry : keys.entrySet()) {
+                long size = sizes.getOrDefault(entry.getKey(), -1L);
+                queued.acquire();
+                futures.put(entry.getKey(), executor.submit(() -> {
+                    try {
+                        return copy(sourceBucket, entry.getKey(), targetBucket, entry.getValue(), size);
+                    } finally {
+                        queued.release();
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+                try {
+                    copiedBytes += Math.max(0L, future.getValue().get());
+                    copiedKeys.add(future.getKey());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    String code = cause instanceof AmazonServiceException ? ((AmazonServiceException) cause).getErrorCode() : null;
+                    String message = cause instanceof AmazonServiceException ? ((AmazonServiceException) cause).getErrorMessage() : cause.getMessage();
+                    failures.add(new CopyResult.Failure(future.getKey(), keys.get(future.getKey()), code, message));
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel(futures.values());
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unable to copy objects", e);
+        }
+        return new CopyResult(copiedKeys, copiedBytes, failures, new DeleteResult(Collections.emptyList(), Collections.emptyList()));
+    }
+
+    /**
+     * Copies one object and waits for the copy to complete. Objects known to be above the multipart copy threshold, or
+     * rejected by S3 as too large for a single copy request, are copied in parts through the {@link TransferManager},
+     * which needs the metadata of the source. All other objects are copied with a single copy request.
+     * @param size the size of the source, or -1 if it is not known
+     * @return the size of the copied object, or -1 if it is not known
+     */
+    private long copy(String sourceBucket, String sourceKey, String targetBucket, String targetKey, long size) throws InterruptedException {
+        if (size <= this.multipartCopyThreshold) {
+            try {
+                this.s3.copyObject(sourceBucket, sourceKey, targetBucket, targetKey);
+                return size;
+            } catch (AmazonServiceException e) {
+                if (size >= 0L || !isTooLargeForCopyObject(e)) {
+                    throw e;
+                }
+            }
+        }
+        Copy copy = this.transferManager().copy(sourceBucket, sourceKey, targetBucket, targetKey);
+        copy.waitForCopyResult();
+        return copy.getProgress().getTotalBytesToTransfer();
+    }
+
+    private static boolean isTooLargeForCopyObject(AmazonServiceException e) {
+        return e.getStatusCode() == 400 && "InvalidRequest".equals(e.getErrorCode())
+            && e.getErrorMessage() != null && e.getErrorMessage().contains("larger than the maximum allowable size");
+    }
+
+    /**
+     * Deletes objects from a bucket in concurrent batches as {@link #deleteObjectsWithResult(String, List)} does
      * @param bucket the bucket name
      * @param keys locations of objects to delete from the bucket
      * @return locations of objects deleted from the bucket
+     * @throws RuntimeException if S3 reported any key as not deleted
      */
     public List<String> deleteObjects(String bucket, List<String> keys) {
-        List<KeyVersion> keysToDelete = new ArrayList();
-        Iterator var4 = keys.iterator();
+        DeleteResult result = this.deleteObjectsWithResult(bucket, keys);
+        if (!result.isSuccessful()) {
+            throw new RuntimeException("Unable to delete objects: " + result.getFailures());
+        }
+        return result.getDeletedKeys();
+    }
 
-        while(var4.hasNext()) {
-            String key = (String)var4.next();
+    /**
+     * Deletes objects from a bucket. Keys are split into batches of at most {@value #MAX_DELETE_BATCH_SIZE} which are
+     * sent concurrently in quiet mode
+     * @param bucket the bucket name
+     * @param keys locations of objects to delete from the bucket
+     * @return {@link DeleteResult} with the deleted keys and a failure for each key that could not be deleted
+     */
+    public DeleteResult deleteObjectsWithResult(String bucket, List<String> keys) {
+        List<KeyVersion> keysToDelete = new ArrayList<>(keys.size());
+        for (String key : keys) {
             keysToDelete.add(new KeyVersion(key));
         }
+        return deleteKeyVersions(bucket, keysToDelete);
+    }
+
+    /**
+     * Deletes object versions from a bucket in concurrent batches of at most {@value #MAX_DELETE_BATCH_SIZE}. The batches
+     * are sent on the delete executor, so callers running on request threads do not wait on their own pool.
+     * @param bucket the bucket name
+     * @param keys keys and optional version ids to delete
+     * @return {@link DeleteResult} for all batches
+     */
+    private DeleteResult deleteKeyVersions(String bucket, List<KeyVersion> keys) {
+        if (keys.size() <= MAX_DELETE_BATCH_SIZE) {
+            return deleteBatch(bucket, keys);
+        }
 
-        List<String> deletedObjects = new ArrayList();
-        if (!keysToDelete.isEmpty()) {
-            DeleteObjectsResult deletedObjectsResult = this.s3.deleteObjects((new DeleteObjectsRequest(bucket)).withKeys(keysToDelete));
-            Iterator var6 = deletedObjectsResult.getDeletedObjects().iterator();
+        ExecutorService executor = this.deleteExecutor();
+        List<Future<DeleteResult>> futures = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i += MAX_DELETE_BATCH_SIZE) {
+            List<KeyVersion> batch = keys.subList(i, Math.min(keys.size(), i + MAX_DELETE_BATCH_SIZE));
+            futures.add(executor.submit(() -> deleteBatch(bucket, batch)));
+        }
 
-            while(var6.hasNext()) {
-                DeletedObject deletedObject = (DeletedObject)var6.next();
-                deletedObjects.add(deletedObject.getKey());
+        List<DeleteResult> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<DeleteResult> future : futures) {
+                results.add(future.get());
             }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unable to delete objects", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new RuntimeException("Unable to delete objects", e.getCause());
         }
+        return DeleteResult.merge(results);
+    }
 
-        return deletedObjects;
+    /**
+     * Empties a bucket of every object version and delete marker. Version listing pages feed a bounded queue drained by
+     * several delete workers, listing is repeated until the bucket is empty. A bucket that has never been versioned is
+     * listed by key instead.
+     * @param bucket the bucket name
+     * @param progressListener receives periodic {@link EmptyBucketStatus} reports and the final status
+     * @return the final {@link EmptyBucketStatus}
+     */
+    public EmptyBucketStatus emptyBucket(String bucket, Consumer<EmptyBucketStatus> progressListener) {
+        return new BucketEmptier(this.s3, this::deleteBatch, emptyBucketWorkers, daemonThreadFactory("s3-operations-empty-"),
+            EMPTY_BUCKET_PROGRESS_INTERVAL_MILLIS).empty(bucket, progressListener);
+    }
+
+    /**
+     * Sends a single quiet delete request. The response of a quiet request only lists errors, every other key in the
+     * batch was deleted. Errors of the request itself, such as a missing bucket or denied access, are thrown.
+     * @param bucket the bucket name
+     * @param batch at most {@value #MAX_DELETE_BATCH_SIZE} keys and optional version ids
+     * @return {@link DeleteResult} for the batch
+     */
+    DeleteResult deleteBatch(String bucket, List<KeyVersion> batch) {
+        if (batch.isEmpty()) {
+            return new DeleteResult(Collections.emptyList(), Collections.emptyList());
+        }
+
+        List<DeleteResult.Failure> failures = new ArrayList<>();
+        try {
+            this.s3.deleteObjects(new DeleteObjectsRequest(bucket).withKeys(batch).withQuiet(true));
+        } catch (MultiObjectDeleteException e) {
+            for (DeleteError error : e.getErrors()) {
+                failures.add(new DeleteResult.Failure(error.getKey(), error.getVersionId(), error.getCode(), error.getMessage()));
+            }
+        }
+
+        Set<String> failedKeys = new HashSet<>();
+        for (DeleteResult.Failure failure : failures) {
+            failedKeys.add(failure.getKey() + '\u0000' + failure.getVersionId());
+        }
+        List<String> deletedKeys = new ArrayList<>(batch.size());
+        for (KeyVersion keyVersion : batch) {
+            if (!failedKeys.contains(keyVersion.getKey() + '\u0000' + keyVersion.getVersion())) {
+                deletedKeys.add(keyVersion.getKey());
+            }
+        }
+        return new DeleteResult(deletedKeys, failures);
     }
 
     /**
@@ -97,21 +532,8 @@ public class S3OperationsImpl implements S3Operations {
      * @return objects matching the prefix within the bucket
      */
     public List<String> listObjects(String bucket, String prefix) {
-        List<String> keys = new LinkedList();
-        ObjectListing objectListing = this.s3.listObjects(bucket, prefix);
-
-        while(true) {
-            Iterator objIter = objectListing.getObjectSummaries().iterator();
-
-            while(objIter.hasNext()) {
-                keys.add(((S3ObjectSummary)objIter.next()).getKey());
-            }
-
-            if (!objectListing.isTruncated()) {
-                return keys;
-            }
-
-            objectListing = this.s3.listNextBatchOfObjects(objectListing);
+        try (Stream<ObjectSummary> objects = this.streamObjects(bucket, prefix)) {
+            return objects.map(ObjectSummary::getKey).collect(Collectors.toList());
         }
     }
 
@@ -125,24 +547,98 @@ public class S3OperationsImpl implements S3Operations {
     }
 
     /**
-     * Uploads on object to a bucket
+     * Lists summaries of objects matching a prefix within a bucket
+     * @param bucket the bucket name
+     * @param prefix the object prefix
+     * @return {@link ObjectSummary} for each object matching the prefix within the bucket
+     */
+    public List<ObjectSummary> listObjectSummaries(String bucket, String prefix) {
+        try (Stream<ObjectSummary> objects = this.streamObjects(bucket, prefix)) {
+            return objects.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Lazily iterates over objects matching a prefix within a bucket. Pages are fetched on demand and the next page is
+     * requested in the background while the current one is consumed.
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @return {@link Iterator} of {@link ObjectSummary}
+     */
+    public Iterator<ObjectSummary> iterateObjects(String bucket, String prefix) {
+        return new ObjectSummaryIterator(this.s3, this.requestExecutor(), bucket, prefix);
+    }
+
+    /**
+     * Lazily streams objects matching a prefix within a bucket. Pages are fetched on demand and the next page is
+     * requested in the background while the current one is consumed. Close the stream to abandon a pending page.
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @return {@link Stream} of {@link ObjectSummary}
+     */
+    public Stream<ObjectSummary> streamObjects(String bucket, String prefix) {
+        ObjectSummaryIterator iterator = new ObjectSummaryIterator(this.s3, this.requestExecutor(), bucket, prefix);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Streams objects matching a prefix within a bucket. The top-level partitions below the prefix are discovered with a
+     * delimiter listing and listed on the request thread pool, as many at a time as there are request threads. Each
+     * partition is held in memory until it has been listed completely. Close the stream to abandon the partitions that
+     * are still being listed.
+     * @param bucket the bucket name
+     * @param prefix the object prefix, or null for the whole bucket
+     * @param ordered if true objects are streamed in key order, otherwise partitions are streamed as they complete
+     * @return {@link Stream} of {@link ObjectSummary}
+     */
+    public Stream<ObjectSummary> streamObjectsPartitioned(String bucket, String prefix, boolean ordered) {
+        PartitionedObjectIterator iterator = new PartitionedObjectIterator(this.s3, this.requestExecutor(), bucket, prefix, this.requestThreads, ordered);
+        int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false)
+            .onClose(iterator::close);
+    }
+
+    /**
+     * Uploads on object to a bucket. The pause state of a multipart upload is kept in a file next to the source, named
+     * after the source with {@value TransferStateFile#SUFFIX} appended, until the upload completes. When the upload is
+     * interrupted, or the process stops, the next upload of the same unchanged file to the same key continues from the
+     * parts already uploaded.
      * @param source {@link Path} to source object
      * @param targetBucket the target bucket name
      * @param targetKey the location of the source object within the bucket
      */
     public void upload(Path source, String targetBucket, String targetKey) {
-        TransferManager transferManager = TransferManagerBuilder.standard().withS3Client(this.s3).build();
+        TransferStateFile state = TransferStateFile.forUpload(source, targetBucket, targetKey);
+        TransferManager transferManager = this.transferManager();
+        PersistableUpload paused = state.read(PersistableUpload.class);
+        if (paused != null) {
+            try {
+                this.awaitUpload(transferManager.resumeUpload(paused), state);
+                return;
+            } catch (AmazonServiceException e) {
+                if (e.getStatusCode() != 404) {
+                    throw e;
+                }
+                // the multipart upload was aborted or has expired
+                state.delete();
+            }
+        }
+        this.awaitUpload(transferManager.upload(new PutObjectRequest(targetBucket, targetKey, source.toFile()), state.listener()), state);
+    }
 
+    private void awaitUpload(Upload upload, TransferStateFile state) {
         try {
-            Upload upload = transferManager.upload(targetBucket, targetKey, source.toFile());
             upload.waitForCompletion();
-        } catch (InterruptedException var9) {
+            state.delete();
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new RuntimeException("Unable to copy file to bucket", var9);
-        } finally {
-            transferManager.shutdownNow(false);
+            PauseResult<PersistableUpload> pause = upload.tryPause(false);
+            if (pause.getInfoToResume() != null) {
+                state.write(pause.getInfoToResume());
+            }
+            throw new RuntimeException("Unable to copy file to bucket", e);
         }
-
     }
 
     /**
@@ -162,25 +658,82 @@ public class S3OperationsImpl implements S3Operations {
     }
 
     /**
-     * Downloads on object from a bucket
+     * Downloads on object from a bucket. Objects are fetched with concurrent ranged GETs of the download part size, each
+     * written at its offset into the preallocated target, and failed parts are retried on their own. The parts already
+     * written are recorded in a file next to the target, named after the target with {@value TransferStateFile#SUFFIX}
+     * appended, until the download completes. When the download is interrupted, or the process stops, the next download
+     * of the same object version to the same target only fetches the missing parts. The file is checked against the MD5
+     * of the object when it is known from the ETag or the md5 user metadata. An object no larger than the download part
+     * size is fetched with a single GET and no state file.
      * @param sourceBucket the source bucket name
      * @param sourceKey the location of the object within the source bucket
      * @param target {@link Path} to output object
      */
     public void download(String sourceBucket, String sourceKey, Path target) {
         this.createParent(target);
-        TransferManager transferManager = TransferManagerBuilder.standard().withS3Client(this.s3).build();
+        this.rangedDownload().download(sourceBucket, sourceKey, target);
+    }
 
-        try {
-            Download download = transferManager.download(sourceBucket, sourceKey, target.toFile());
-            download.waitForCompletion();
-        } catch (InterruptedException var9) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Unable to download file", var9);
-        } finally {
-            transferManager.shutdownNow(false);
+    private RangedDownload rangedDownload() {
+        return new RangedDownload(this.s3, this.downloadExecutor(), this.downloadPartSize, this.downloadPartRetries);
+    }
+
+    /**
+     * Opens an object for reading with a single GET as the stream is consumed
+     * @param bucket the bucket name
+     * @param key the object key
+     * @return {@link InputStream} of the object content, which must be closed
+     */
+    public InputStream openObject(String bucket, String key) {
+        return this.openObject(bucket, key, ObjectReadOptions.defaults());
+    }
+
+    /**
+     * Opens a byte range of an object for reading. Without read-ahead the range is read with a single GET as the stream
+     * is consumed, closing the stream before the end of the range aborts the GET. With read-ahead the range is fetched
+     * in chunks on the download executor, each pinned to the ETag of the object, while the previous chunk is read.
+     * @param bucket the bucket name
+     * @param key the object key
+     * @param options {@link ObjectReadOptions} with the range and read-ahead
+     * @return {@link InputStream} of the object content, which must be closed
+     */
+    public InputStream openObject(String bucket, String key, ObjectReadOptions options) {
+        if (options.getReadAheadChunks() > 0) {
+            ObjectMetadata metadata = this.s3.getObjectMetadata(bucket, key);
+            long end = options.getLength() < 0L
+                ? metadata.getContentLength()
+                : Math.min(metadata.getContentLength(), options.getPosition() + options.getLength());
+            return new ReadAheadInputStream(this.s3, this.downloadExecutor(), bucket, key, metadata.getETag(), options.getPosition(), end,
+                options.getReadAheadChunkSize(), options.getReadAheadChunks());
+        }
+        if (options.getLength() == 0L) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        GetObjectRequest request = new GetObjectRequest(bucket, key);
+        if (options.isRanged()) {
+            if (options.getLength() < 0L) {
+                request.setRange(options.getPosition());
+            } else {
+                request.setRange(options.getPosition(), options.getPosition() + options.getLength() - 1L);
+            }
         }
+        return new ObjectContentInputStream(this.s3.getObject(request).getObjectContent());
+    }
 
+    /**
+     * Parses a JSON object straight from the object content with the project's {@link ObjectMapper}
+     * @param bucket the bucket name
+     * @param key the object key
+     * @param type the type to parse
+     * @param <T> the type to parse
+     * @return the parsed object
+     */
+    public <T> T readJson(String bucket, String key, TypeReference<T> type) {
+        try (InputStream in = this.openObject(bucket, key)) {
+            return OBJECT_MAPPER.readValue(in, type);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read JSON: s3://" + bucket + "/" + key, e);
+        }
     }
 
     /**
@@ -189,10 +742,8 @@ public class S3OperationsImpl implements S3Operations {
      * @param bucket the bucket name
      */
     public void uploadDirectoryToBucket(Path dir, String bucket) {
-        TransferManager transferManager = TransferManagerBuilder.standard().withS3Client(this.s3).build();
-
         try {
-            MultipleFileUpload upload = transferManager.uploadDirectory(bucket, "", dir.toFile(), true, (file, objectMetadata) -> {
+            MultipleFileUpload upload = this.transferManager().uploadDirectory(bucket, "", dir.toFile(), true, (file, objectMetadata) -> {
                 Optional<String> maybeContentType = new DefaultContentTypeResolver().resolveContentType(file.getName());
                 Objects.requireNonNull(objectMetadata);
                 maybeContentType.ifPresent(objectMetadata::setContentType);
@@ -201,10 +752,500 @@ public class S3OperationsImpl implements S3Operations {
         } catch (InterruptedException var8) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Unable to sync files to bucket", var8);
-        } finally {
-            transferManager.shutdownNow(false);
         }
 
     }
-}
 
+    /**
+     * Synchronizes a directory with a bucket. Only new or changed files are uploaded and only objects no longer present
+     * in the directory are deleted, files are compared by size and MD5
+     * @param dir the directory to synchronize with the bucket
+     * @param bucket the bucket name
+     * @return {@link SyncResult} describing the uploaded, deleted and unchanged objects
+     */
+    public SyncResult syncDirectoryToBucket(Path dir, String bucket) {
+        Map<String, Path> localFiles = new TreeMap<>();
+        for (Path file : ITUtils.listFiles(dir)) {
+            localFiles.put(toKey(dir.relativize(file)), file);
+        }
+
+        Map<String, ObjectSummary> remoteObjects = new HashMap<>();
+        for (ObjectSummary summary : listObjectSummaries(bucket, null)) {
+            remoteObjects.put(summary.getKey(), summary);
+        }
+
+        Map<String, String> localMd5s = computeMd5s(localFiles);
+
+        List<String> changedKeys = new ArrayList<>();
+        int unchanged = 0;
+        for (Map.Entry<String, Path> entry : localFiles.entrySet()) {
+            String key = entry.getKey();
+            ObjectSummary remote = remoteObjects.remove(key);
+            if (remote != null && ContentDigests.matches(remote, sizeOf(entry.getValue()), localMd5s.get(key),
+                () -> this.s3.getObjectMetadata(bucket, key).getUserMetadata())) {
+                unchanged++;
+            } else {
+                changedKeys.add(key);
+            }
+        }
+
+        long transferredBytes = 0L;
+        if (!changedKeys.isEmpty()) {
+            TransferManager transferManager = this.transferManager();
+            try {
+                List<Upload> uploads = new ArrayList<>(changedKeys.size());
+                for (String key : changedKeys) {
+                    Path file = localFiles.get(key);
+                    ObjectMetadata metadata = new ObjectMetadata();
+                    new DefaultContentTypeResolver().resolveContentType(file.getFileName().toString()).ifPresent(metadata::setContentType);
+                    metadata.addUserMetadata(ContentDigests.MD5_METADATA_KEY, localMd5s.get(key));
+                    uploads.add(transferManager.upload(new PutObjectRequest(bucket, key, file.toFile()).withMetadata(metadata)));
+                    transferredBytes += sizeOf(file);
+                }
+                for (Upload upload : uploads) {
+                    upload.waitForCompletion();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Unable to sync files to bucket", e);
+            }
+        }
+
+        List<String> staleKeys = new ArrayList<>(remoteObjects.keySet());
+        Collections.sort(staleKeys);
+        DeleteResult deleteResult = deleteObjectsWithResult(bucket, staleKeys);
+        if (!deleteResult.isSuccessful()) {
+            throw new RuntimeException("Unable to delete stale objects from bucket: " + deleteResult.getFailures());
+        }
+        List<String> deletedKeys = deleteResult.getDeletedKeys();
+
+        return new SyncResult(changedKeys, deletedKeys, unchanged, transferredBytes);
+    }
+
+    /**
+     * Synchronizes the entries of a zip file with a bucket without extracting the zip. Entries are streamed to their
+     * keys in parallel on the request executor, only new or changed entries are uploaded and only objects no longer
+     * present in the zip are deleted, entries are compared by size and MD5
+     * @param zip the zip file to synchronize with the bucket
+     * @param entryPrefix only entries starting with this prefix are synchronized, the prefix is removed from their keys
+     * @param bucket the bucket name
+     * @return {@link SyncResult} describing the uploaded, deleted and unchanged objects
+     */
+    public SyncResult syncZipToBucket(Path zip, String entryPrefix, String bucket) {
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            Map<String, ZipEntry> entries = new TreeMap<>();
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (!entry.isDirectory() && entry.getName().startsWith(entryPrefix) && entry.getName().length() > entryPrefix.length()) {
+                    entries.put(entry.getName().substring(entryPrefix.length()), entry);
+                }
+            }
+
+            Map<String, ObjectSummary> remoteObjects = new HashMap<>();
+            for (ObjectSummary summary : listObjectSummaries(bucket, null)) {
+                remoteObjects.put(summary.getKey(), summary);
+            }
+
+            ExecutorService executor = this.requestExecutor();
+            Map<String, Future<Long>> futures = new TreeMap<>();
+            for (Map.Entry<String, ZipEntry> entry : entries.entrySet()) {
+                String key = entry.getKey();
+                ObjectSummary remote = remoteObjects.remove(key);
+                futures.put(key, executor.submit(() -> syncZipEntry(zipFile, entry.getValue(), bucket, key, remote)));
+            }
+
+            List<String> transferredKeys = new ArrayList<>();
+            int unchanged = 0;
+            long transferredBytes = 0L;
+            for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+                long bytes = future.getValue().get();
+                if (bytes < 0L) {
+                    unchanged++;
+                } else {
+                    transferredKeys.add(future.getKey());
+                    transferredBytes += bytes;
+                }
+            }
+
+            List<String> staleKeys = new ArrayList<>(remoteObjects.keySet());
+            Collections.sort(staleKeys);
+            DeleteResult deleteResult = deleteObjectsWithResult(bucket, staleKeys);
+            if (!deleteResult.isSuccessful()) {
+                throw new RuntimeException("Unable to delete stale objects from bucket: " + deleteResult.getFailures());
+            }
+
+            return new SyncResult(transferredKeys, deleteResult.getDeletedKeys(), unchanged, transferredBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read zip file: " + zip, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unable to sync zip file to bucket", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to sync zip file to bucket", e.getCause());
+        }
+    }
+
+    /**
+     * Uploads a zip entry if it differs from the remote object. Entries below the multipart threshold are read into
+     * memory once and sent with a single put, larger entries are digested and then streamed through the shared
+     * {@link TransferManager} as a multipart upload.
+     * @param zipFile the open zip file
+     * @param entry the entry to synchronize
+     * @param bucket the bucket name
+     * @param key the key of the entry
+     * @param remote the remote object, or null if there is none
+     * @return the number of bytes uploaded, or -1 if the entry was unchanged
+     */
+    private long syncZipEntry(ZipFile zipFile, ZipEntry entry, String bucket, String key, ObjectSummary remote) throws IOException, InterruptedException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        new DefaultContentTypeResolver().resolveContentType(key.substring(key.lastIndexOf('/') + 1)).ifPresent(metadata::setContentType);
+
+        if (entry.getSize() < 0L || entry.getSize() < multipartUploadThreshold) {
+            byte[] content;
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                content = IOUtils.toByteArray(in);
+            }
+            String md5 = ContentDigests.md5Hex(content);
+            if (remote != null && ContentDigests.matches(remote, content.length, md5, () -> this.s3.getObjectMetadata(bucket, key).getUserMetadata())) {
+                return -1L;
+            }
+            metadata.setContentLength(content.length);
+            metadata.addUserMetadata(ContentDigests.MD5_METADATA_KEY, md5);
+            this.s3.putObject(new PutObjectRequest(bucket, key, new ByteArrayInputStream(content), metadata));
+            return content.length;
+        }
+
+        String md5 = ContentDigests.md5Hex(zipFile.getInputStream(entry));
+        if (remote != null && ContentDigests.matches(remote, entry.getSize(), md5, () -> this.s3.getObjectMetadata(bucket, key).getUserMetadata())) {
+            return -1L;
+        }
+        metadata.setContentLength(entry.getSize());
+        metadata.addUserMetadata(ContentDigests.MD5_METADATA_KEY, md5);
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            this.transferManager().upload(new PutObjectRequest(bucket, key, in, metadata)).waitForCompletion();
+        }
+        return entry.getSize();
+    }
+
+    /**
+     * Downloads every object under a prefix to a directory, keeping the key relative to the prefix as the relative path.
+     * The listing is streamed and each object is queued on the shared prefix download executor as soon as it is listed,
+     * with at most twice the request thread count queued at once. The listing is prefetched on the request executor and
+     * the parts of large objects are downloaded on the download executor, so none of these pools waits on itself. An
+     * object is skipped when the local file has the size and last modified time of the object, which every downloaded
+     * file is given, or otherwise when its size and MD5 match. Files in the directory without an object are left in
+     * place.
+     * @param bucket the bucket name
+     * @param prefix only objects whose keys start with this prefix are downloaded, or null for the whole bucket
+     * @param dir the directory to download to
+     * @return {@link SyncResult} describing the downloaded and unchanged objects
+     */
+    public SyncResult downloadPrefix(String bucket, String prefix, Path dir) {
+        String keyPrefix = prefix == null ? "" : prefix;
+        Path root = dir.toAbsolutePath().normalize();
+        ExecutorService executor = this.prefixExecutor();
+        Semaphore queued = new Semaphore(this.requestThreads * 2);
+        Map<String, Future<Long>> futures = new TreeMap<>();
+        try (Stream<ObjectSummary> objects = this.streamObjects(bucket, prefix)) {
+            Iterator<ObjectSummary> iterator = objects.iterator();
+            while (iterator.hasNext()) {
+                ObjectSummary summary = iterator.next();
+                if (summary.getKey().endsWith("/")) {
+                    // folder placeholder
+                    continue;
+                }
+                Path target = toPath(root, summary.getKey().substring(keyPrefix.length()));
+                queued.acquire();
+                futures.put(summary.getKey(), executor.submit(() -> {
+                    try {
+                        return downloadIfChanged(bucket, summary, target);
+                    } finally {
+                        queued.release();
+                    }
+                }));
+            }
+
+            List<String> transferredKeys = new ArrayList<>();
+            int unchanged = 0;
+            long transferredBytes = 0L;
+            for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+                long bytes = future.getValue().get();
+                if (bytes < 0L) {
+                    unchanged++;
+                } else {
+                    transferredKeys.add(future.getKey());
+                    transferredBytes += bytes;
+                }
+            }
+            return new SyncResult(transferredKeys, Collections.emptyList(), unchanged, transferredBytes);
+        } catch (InterruptedException e) {
+            cancel(futures.values());
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unable to download prefix", e);
+        } catch (ExecutionException e) {
+            cancel(futures.values());
+            throw new RuntimeException("Unable to download prefix", e.getCause());
+        } catch (RuntimeException e) {
+            cancel(futures.values());
+            throw e;
+        }
+    }
+
+    /**
+     * Downloads an object unless the local file already holds it, then gives the file the last modified time of the
+     * object so the next comparison does not need a digest
+     * @param bucket the bucket name
+     * @param remote the object
+     * @param target the local file
+     * @return the number of bytes downloaded, or -1 if the file was unchanged
+     */
+    private long downloadIfChanged(String bucket, ObjectSummary remote, Path target) throws IOException {
+        String key = remote.getKey();
+        boolean unchanged = Files.isRegularFile(target)
+            && !Files.exists(target.resolveSibling(target.getFileName() + TransferStateFile.SUFFIX))
+            && Files.size(target) == remote.getSize()
+            && (isLastModified(target, remote)
+                || ContentDigests.matches(remote, remote.getSize(), ContentDigests.md5Hex(target), () -> this.s3.getObjectMetadata(bucket, key).getUserMetadata()));
+        if (!unchanged) {
+            // the listing already gave the size and ETag, small objects need no HEAD request
+            this.createParent(target);
+            this.rangedDownload().download(bucket, key, remote.getSize(), remote.getETag(), target);
+        }
+        if (remote.getLastModified() != null && !isLastModified(target, remote)) {
+            Files.setLastModifiedTime(target, FileTime.from(remote.getLastModified()));
+        }
+        return unchanged ? -1L : remote.getSize();
+    }
+
+    private static boolean isLastModified(Path file, ObjectSummary remote) throws IOException {
+        return remote.getLastModified() != null && Files.getLastModifiedTime(file).toMillis() == remote.getLastModified().toEpochMilli();
+    }
+
+    /**
+     * Resolves a key relative to a download prefix against the download directory
+     * @param root the normalized download directory
+     * @param relativeKey the key without the prefix
+     * @return the local file
+     */
+    private static Path toPath(Path root, String relativeKey) {
+        Path target = root;
+        for (String name : relativeKey.split("/")) {
+            if (!name.isEmpty()) {
+                target = target.resolve(name);
+            }
+        }
+        target = target.normalize();
+        if (target.equals(root) || !target.startsWith(root)) {
+            throw new IllegalStateException("Key does not resolve to a file within " + root + ": " + relativeKey);
+        }
+        return target;
+    }
+
+    private static void cancel(Collection<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Computes MD5 digests of local files in parallel on the request executor
+     * @param files local files by key
+     * @return hex encoded MD5 by key
+     */
+    private Map<String, String> computeMd5s(Map<String, Path> files) {
+        ExecutorService executor = this.requestExecutor();
+        Map<String, Future<String>> futures = new HashMap<>();
+        try {
+            for (Map.Entry<String, Path> entry : files.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> ContentDigests.md5Hex(entry.getValue())));
+            }
+            Map<String, String> md5s = new HashMap<>();
+            for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+                md5s.put(entry.getKey(), entry.getValue().get());
+            }
+            return md5s;
+        } catch (InterruptedException e) {
+            cancel(futures.values());
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Unable to compute file digests", e);
+        } catch (ExecutionException e) {
+            cancel(futures.values());
+            throw new RuntimeException("Unable to compute file digests", e.getCause());
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read file size: " + file, e);
+        }
+    }
+
+    /**
+     * Converts a relative path to an S3 key
+     * @param relativePath path relative to the synchronized directory
+     * @return key using '/' separators
+     */
+    private static String toKey(Path relativePath) {
+        StringBuilder key = new StringBuilder();
+        for (Path name : relativePath) {
+            if (key.length() > 0) {
+                key.append('/');
+            }
+            key.append(name.toString());
+        }
+        return key.toString();
+    }
+
+    public static class Builder {
+
+        private AmazonS3 s3;
+        private int requestThreads = DEFAULT_REQUEST_THREADS;
+        private int emptyBucketWorkers = DEFAULT_EMPTY_BUCKET_WORKERS;
+        private int transferThreads = DEFAULT_TRANSFER_THREADS;
+        private long multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+        private long minimumUploadPartSize = DEFAULT_MINIMUM_UPLOAD_PART_SIZE;
+        private long multipartCopyThreshold = DEFAULT_MULTIPART_COPY_THRESHOLD;
+        private long multipartCopyPartSize = DEFAULT_MULTIPART_COPY_PART_SIZE;
+        private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+        private long downloadPartSize = DEFAULT_DOWNLOAD_PART_SIZE;
+        private int downloadPartRetries = DEFAULT_DOWNLOAD_PART_RETRIES;
+
+        public static Builder configure() {
+            return new Builder();
+        }
+
+        private Builder() {
+
+        }
+
+        public Builder withS3(AmazonS3 s3) {
+            this.s3 = s3;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used for concurrent requests such as batch deletes
+         * @param requestThreads the thread pool size
+         * @return this builder
+         */
+        public Builder withRequestThreads(int requestThreads) {
+            if (requestThreads < 1) {
+                throw new IllegalArgumentException("requestThreads must be at least 1");
+            }
+            this.requestThreads = requestThreads;
+            return this;
+        }
+
+        /**
+         * Sets the number of concurrent delete workers used to empty a bucket
+         * @param emptyBucketWorkers the number of workers
+         * @return this builder
+         */
+        public Builder withEmptyBucketWorkers(int emptyBucketWorkers) {
+            if (emptyBucketWorkers < 1) {
+                throw new IllegalArgumentException("emptyBucketWorkers must be at least 1");
+            }
+            this.emptyBucketWorkers = emptyBucketWorkers;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used by the shared {@link TransferManager}
+         * @param transferThreads the thread pool size
+         * @return this builder
+         */
+        public Builder withTransferThreads(int transferThreads) {
+            if (transferThreads < 1) {
+                throw new IllegalArgumentException("transferThreads must be at least 1");
+            }
+            this.transferThreads = transferThreads;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes above which uploads are split into parts
+         * @param multipartUploadThreshold the multipart threshold
+         * @return this builder
+         */
+        public Builder withMultipartUploadThreshold(long multipartUploadThreshold) {
+            this.multipartUploadThreshold = multipartUploadThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the minimum size in bytes of each part of a multipart upload
+         * @param minimumUploadPartSize the part size
+         * @return this builder
+         */
+        public Builder withMinimumUploadPartSize(long minimumUploadPartSize) {
+            this.minimumUploadPartSize = minimumUploadPartSize;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes above which copies are split into parts copied in parallel
+         * @param multipartCopyThreshold the multipart copy threshold
+         * @return this builder
+         */
+        public Builder withMultipartCopyThreshold(long multipartCopyThreshold) {
+            this.multipartCopyThreshold = multipartCopyThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the minimum size in bytes of each part of a multipart copy
+         * @param multipartCopyPartSize the part size
+         * @return this builder
+         */
+        public Builder withMultipartCopyPartSize(long multipartCopyPartSize) {
+            this.multipartCopyPartSize = multipartCopyPartSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads downloading parts, which bounds the number of concurrent ranged GETs
+         * @param downloadThreads the thread pool size
+         * @return this builder
+         */
+        public Builder withDownloadThreads(int downloadThreads) {
+            if (downloadThreads < 1) {
+                throw new IllegalArgumentException("downloadThreads must be at least 1");
+            }
+            this.downloadThreads = downloadThreads;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes of each ranged GET of a download
+         * @param downloadPartSize the part size
+         * @return this builder
+         */
+        public Builder withDownloadPartSize(long downloadPartSize) {
+            if (downloadPartSize < 1) {
+                throw new IllegalArgumentException("downloadPartSize must be at least 1");
+            }
+            this.downloadPartSize = downloadPartSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of times a failed download part is retried
+         * @param downloadPartRetries the number of retries
+         * @return this builder
+         */
+        public Builder withDownloadPartRetries(int downloadPartRetries) {
+            if (downloadPartRetries < 0) {
+                throw new IllegalArgumentException("downloadPartRetries must not be negative");
+            }
+            this.downloadPartRetries = downloadPartRetries;
+            return this;
+        }
+
+        public S3OperationsImpl build() {
+            return new S3OperationsImpl(this);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Holds the {@link ObjectMapper} used by the default methods of {@link S3Operations}, which cannot have private fields
+ */
+final class SharedObjectMapper {
+
+  static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
+  private SharedObjectMapper() {
+  }
+}
@@ -0,0 +1,221 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.CreateStackRequest;
+import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incrementally reads the events of a stack operation, remembering the last event seen so each poll only reads new
+ * events. Only events of the stack itself decide the outcome: the operation is finished when the stack reports the
+ * terminal status of the operation and has failed when the stack reports a failure or starts rolling back. A failed
+ * resource is logged and reported as the reason of a later stack failure, on its own it does not fail the operation,
+ * as resources that cannot be deleted while an update is cleaning up leave the update complete.
+ */
+class StackEventTail {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StackEventTail.class);
+
+  private static final String STACK_RESOURCE_TYPE = "AWS::CloudFormation::Stack";
+
+  /**
+   * Stack operations that can be waited on
+   */
+  enum Operation {
+    CREATE("CREATE_COMPLETE"),
+    UPDATE("UPDATE_COMPLETE"),
+    DELETE("DELETE_COMPLETE");
+
+    private final String completeStatus;
+
+    Operation(String completeStatus) {
+      this.completeStatus = completeStatus;
+    }
+  }
+
+  private final AmazonCloudFormation cf;
+  private final String stackName;
+  private final String stackId;
+  private final Operation operation;
+  private final boolean unchanged;
+  private String lastSeenEventId;
+  private boolean progressed;
+  private StackEvent resourceFailure;
+
+  /**
+   * @param cf the {@link AmazonCloudFormation} client
+   * @param stackName the name of the stack
+   * @param stackId the unique id of the stack
+   * @param operation the operation being waited on
+   * @param lastSeenEventId the newest event published before the operation started, or null for a new stack
+   */
+  StackEventTail(AmazonCloudFormation cf, String stackName, String stackId, Operation operation, String lastSeenEventId) {
+    this(cf, stackName, stackId, operation, lastSeenEventId, false);
+  }
+
+  private StackEventTail(AmazonCloudFormation cf, String stackName, String stackId, Operation operation, String lastSeenEventId,
+      boolean unchanged) {
+    this.cf = cf;
+    this.stackName = stackName;
+    this.stackId = stackId;
+    this.operation = operation;
+    this.lastSeenEventId = lastSeenEventId;
+    this.unchanged = unchanged;
+  }
+
+  /**
+   * Starts creating a stack
+   * @param cf the {@link AmazonCloudFormation} client
+   * @param request the {@link CreateStackRequest}
+   * @return {@link StackEventTail} for the new stack
+   */
+  static StackEventTail create(AmazonCloudFormation cf, CreateStackRequest request) {
+    String stackId = cf.createStack(request).getStackId();
+    return new StackEventTail(cf, request.getStackName(), stackId, Operation.CREATE, null);
+  }
+
+  /**
+   * Starts updating a stack. The newest event is read first so only events of this update are tailed. An update that
+   * would not change the stack is rejected by CloudFormation, it is tailed as an operation that has already completed.
+   * @param cf the {@link AmazonCloudFormation} client
+   * @param request the {@link UpdateStackRequest}
+   * @return {@link StackEventTail} for the update
+   */
+  static StackEventTail update(AmazonCloudFormation cf, UpdateStackRequest request) {
+    String lastSeenEventId = latestEventId(cf, request.getStackName());
+    String stackId;
+    try {
+      stackId = cf.updateStack(request).getStackId();
+    } catch (AmazonCloudFormationException e) {
+      if (CloudFormationOperationsImpl.isNoUpdate(e)) {
+        return new StackEventTail(cf, request.getStackName(), request.getStackName(), Operation.UPDATE, lastSeenEventId, true);
+      }
+      throw e;
+    }
+    return new StackEventTail(cf, request.getStackName(), stackId, Operation.UPDATE, lastSeenEventId);
+  }
+
+  /**
+   * Starts deleting a stack. The stack is deleted by its unique id so its events can still be read once it is gone.
+   * @param cf the {@link AmazonCloudFormation} client
+   * @param stackName the name of the stack
+   * @return {@link StackEventTail} for the delete, or null if the stack does not exist
+   */
+  static StackEventTail delete(AmazonCloudFormation cf, String stackName) {
+    String stackId;
+    try {
+      stackId = cf.describeStacks(new DescribeStacksRequest().withStackName(stackName)).getStacks().get(0).getStackId();
+    } catch (AmazonCloudFormationException e) {
+      if (CloudFormationOperationsImpl.isStackMissing(e)) {
+        return null;
+      }
+      throw e;
+    }
+    String lastSeenEventId = latestEventId(cf, stackId);
+    cf.deleteStack(new DeleteStackRequest().withStackName(stackId));
+    return new StackEventTail(cf, stackName, stackId, Operation.DELETE, lastSeenEventId);
+  }
+
+  /**
+   * Gets the id of the newest event of a stack
+   * @param cf the {@link AmazonCloudFormation} client
+   * @param stackId the name or unique id of the stack
+   * @return the newest event id, or null if the stack has no events
+   */
+  static String latestEventId(AmazonCloudFormation cf, String stackId) {
+    List<StackEvent> events = cf.describeStackEvents(new DescribeStackEventsRequest().withStackName(stackId)).getStackEvents();
+    return events.isEmpty() ? null : events.get(0).getEventId();
+  }
+
+  String getStackName() {
+    return stackName;
+  }
+
+  /**
+   * @return true if the last poll read new events
+   */
+  boolean hasProgressed() {
+    return progressed;
+  }
+
+  /**
+   * Reads the events published since the last poll
+   * @return the described {@link Stack} once the operation has completed, null while it is in progress
+   * @throws StackOperationFailedException when the stack reports a failure, identifying the first failed resource of
+   * the operation if there is one
+   */
+  Stack poll() {
+    if (unchanged) {
+      return cf.describeStacks(new DescribeStacksRequest().withStackName(stackId)).getStacks().get(0);
+    }
+    List<StackEvent> events = readNewEvents();
+    progressed = !events.isEmpty();
+    boolean complete = false;
+    for (StackEvent event : events) {
+      String status = event.getResourceStatus();
+      if (!isStackEvent(event)) {
+        if (status.endsWith("_FAILED")) {
+          LOGGER.warn("Stack {} Resource Failed: {} ({}) {}: {}", stackName, event.getLogicalResourceId(), event.getResourceType(), status,
+              event.getResourceStatusReason());
+          if (resourceFailure == null) {
+            resourceFailure = event;
+          }
+        }
+      } else if (status.endsWith("_FAILED") || status.contains("ROLLBACK")) {
+        StackEvent reason = resourceFailure == null ? event : resourceFailure;
+        throw new StackOperationFailedException(stackName, reason.getLogicalResourceId(), reason.getResourceType(),
+            reason.getResourceStatus(), reason.getResourceStatusReason());
+      } else if (status.equals(operation.completeStatus)) {
+        complete = true;
+      }
+    }
+    if (!events.isEmpty()) {
+      lastSeenEventId = events.get(events.size() - 1).getEventId();
+    }
+    if (complete) {
+      return cf.describeStacks(new DescribeStacksRequest().withStackName(stackId)).getStacks().get(0);
+    }
+    return null;
+  }
+
+  private boolean isStackEvent(StackEvent event) {
+    return STACK_RESOURCE_TYPE.equals(event.getResourceType())
+        && stackName.equals(event.getLogicalResourceId())
+        && (event.getPhysicalResourceId() == null || stackId.equals(event.getPhysicalResourceId()));
+  }
+
+  /**
+   * Pages through events, newest first, until the last seen event
+   * @return new events in chronological order
+   */
+  private List<StackEvent> readNewEvents() {
+    List<StackEvent> events = new ArrayList<>();
+    String nextToken = null;
+    do {
+      DescribeStackEventsResult result = cf.describeStackEvents(new DescribeStackEventsRequest()
+          .withStackName(stackId)
+          .withNextToken(nextToken));
+      for (StackEvent event : result.getStackEvents()) {
+        if (event.getEventId().equals(lastSeenEventId)) {
+          Collections.reverse(events);
+          return events;
+        }
+        events.add(event);
+      }
+      nextToken = result.getNextToken();
+    } while (nextToken != null);
+    Collections.reverse(events);
+    return events;
+  }
+}
@@ -0,0 +1,46 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+/**
+ * Thrown when a stack operation fails, identifies the first stack event that reported the failure
+ */
+public class StackOperationFailedException extends RuntimeException {
+
+  private final String stackName;
+  private final String logicalResourceId;
+  private final String resourceType;
+  private final String resourceStatus;
+  private final String resourceStatusReason;
+
+  public StackOperationFailedException(String stackName, String logicalResourceId, String resourceType, String resourceStatus,
+      String resourceStatusReason) {
+    super(String.format("Stack '%s' failed: %s (%s) %s: %s", stackName, logicalResourceId, resourceType, resourceStatus, resourceStatusReason));
+    this.stackName = stackName;
+    this.logicalResourceId = logicalResourceId;
+    this.resourceType = resourceType;
+    this.resourceStatus = resourceStatus;
+    this.resourceStatusReason = resourceStatusReason;
+  }
+
+  public String getStackName() {
+    return stackName;
+  }
+
+  /**
+   * @return the logical id of the resource whose event reported the failure
+   */
+  public String getLogicalResourceId() {
+    return logicalResourceId;
+  }
+
+  public String getResourceType() {
+    return resourceType;
+  }
+
+  public String getResourceStatus() {
+    return resourceStatus;
+  }
+
+  public String getResourceStatusReason() {
+    return resourceStatusReason;
+  }
+}
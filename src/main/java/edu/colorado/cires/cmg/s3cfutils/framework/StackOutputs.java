@@ -0,0 +1,227 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.cloudformation.model.Output;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes stack outputs and caches them in the maven target directory, so tests read them without calling
+ * CloudFormation. The outputs come from the {@link StackResult} of the describe that ended the wait for the stack
+ * operation. Each stack has one cache file, {@value #CACHE_DIR}/&lt;stack name&gt;.json, which records the stack id
+ * and last updated time the outputs belong to and is only rewritten when either changes. Lookups parse a cache file
+ * once and reuse it for as long as the file is not modified.
+ */
+public final class StackOutputs {
+
+  /**
+   * Directory within the target directory holding the cached outputs
+   */
+  public static final String CACHE_DIR = "stack-outputs";
+
+  private static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
+  private static final ConcurrentMap<Path, Loaded> LOADED = new ConcurrentHashMap<>();
+
+  /**
+   * Writes outputs to a file in a single pass, as a JSON object if the file name ends with .json and as key=value
+   * lines otherwise
+   * @param outputs List of {@link Output} to write
+   * @param file the file to write
+   */
+  public static void write(List<Output> outputs, Path file) {
+    Map<String, String> values = toMap(outputs);
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      if (file.getFileName().toString().endsWith(".json")) {
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), values);
+      } else {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+          for (Map.Entry<String, String> value : values.entrySet()) {
+            writer.write(value.getKey());
+            writer.write('=');
+            writer.write(value.getValue());
+            writer.write('\n');
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write stack outputs: " + file, e);
+    }
+  }
+
+  /**
+   * Caches the outputs of a stack unless the cache already holds them for the same stack id and last updated time
+   * @param targetDir the maven target directory path
+   * @param result the {@link StackResult} of the stack operation
+   * @return the cache file
+   */
+  public static Path cache(Path targetDir, StackResult result) {
+    Path file = cacheFile(targetDir, result.getStackName());
+    Entry existing = read(file);
+    if (existing != null && Objects.equals(existing.getStackId(), result.getStackId())
+        && Objects.equals(existing.getLastUpdatedTime(), result.getLastUpdatedTime())) {
+      return file;
+    }
+    Entry entry = new Entry();
+    entry.setStackName(result.getStackName());
+    entry.setStackId(result.getStackId());
+    entry.setLastUpdatedTime(result.getLastUpdatedTime());
+    entry.setOutputs(toMap(result.getOutputs()));
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(file.getParent());
+      OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), entry);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to cache stack outputs: " + file, e);
+    }
+    return file;
+  }
+
+  /**
+   * Reads the cached outputs of a stack
+   * @param targetDir the maven target directory path
+   * @param stackName the name of the stack
+   * @return outputs by output key
+   * @throws IllegalStateException if no outputs are cached for the stack
+   */
+  public static Map<String, String> lookup(Path targetDir, String stackName) {
+    Entry entry = read(cacheFile(targetDir, stackName));
+    if (entry == null) {
+      throw new IllegalStateException("No outputs cached for stack '" + stackName + "' in " + targetDir.resolve(CACHE_DIR));
+    }
+    return entry.getOutputs();
+  }
+
+  /**
+   * Reads one cached output of a stack
+   * @param targetDir the maven target directory path
+   * @param stackName the name of the stack
+   * @param outputKey the output key
+   * @return the output value
+   * @throws IllegalStateException if the stack or the output is not cached
+   */
+  public static String lookup(Path targetDir, String stackName, String outputKey) {
+    String value = lookup(targetDir, stackName).get(outputKey);
+    if (value == null) {
+      throw new IllegalStateException("Stack '" + stackName + "' has no output '" + outputKey + "'");
+    }
+    return value;
+  }
+
+  private static Path cacheFile(Path targetDir, String stackName) {
+    return targetDir.toAbsolutePath().normalize().resolve(CACHE_DIR).resolve(stackName + ".json");
+  }
+
+  /**
+   * @return the cache file contents, parsed again only if the file was modified since it was last read, or null if
+   * there is no cache file
+   */
+  private static Entry read(Path file) {
+    FileTime modified;
+    try {
+      modified = Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      LOADED.remove(file);
+      return null;
+    }
+    Loaded loaded = LOADED.get(file);
+    if (loaded != null && loaded.modified.equals(modified)) {
+      return loaded.entry;
+    }
+    try {
+      Entry entry = OBJECT_MAPPER.readValue(file.toFile(), Entry.class);
+      entry.setOutputs(Collections.unmodifiableMap(new LinkedHashMap<>(entry.getOutputs() == null ? Collections.emptyMap() : entry.getOutputs())));
+      LOADED.put(file, new Loaded(modified, entry));
+      return entry;
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read cached stack outputs: " + file, e);
+    }
+  }
+
+  private static Map<String, String> toMap(List<Output> outputs) {
+    Map<String, String> values = new LinkedHashMap<>();
+    for (Output output : outputs) {
+      values.put(output.getOutputKey(), output.getOutputValue());
+    }
+    return values;
+  }
+
+  private static class Loaded {
+
+    private final FileTime modified;
+    private final Entry entry;
+
+    private Loaded(FileTime modified, Entry entry) {
+      this.modified = modified;
+      this.entry = entry;
+    }
+  }
+
+  /**
+   * Contents of a cache file
+   */
+  public static class Entry {
+
+    private String stackName;
+    private String stackId;
+    private Instant lastUpdatedTime;
+    private Map<String, String> outputs;
+
+    public String getStackName() {
+      return stackName;
+    }
+
+    public void setStackName(String stackName) {
+      this.stackName = stackName;
+    }
+
+    public String getStackId() {
+      return stackId;
+    }
+
+    public void setStackId(String stackId) {
+      this.stackId = stackId;
+    }
+
+    /**
+     * @return the time of the last update, null if the stack was never updated
+     */
+    public Instant getLastUpdatedTime() {
+      return lastUpdatedTime;
+    }
+
+    public void setLastUpdatedTime(Instant lastUpdatedTime) {
+      this.lastUpdatedTime = lastUpdatedTime;
+    }
+
+    /**
+     * @return outputs by output key
+     */
+    public Map<String, String> getOutputs() {
+      return outputs;
+    }
+
+    public void setOutputs(Map<String, String> outputs) {
+      this.outputs = outputs;
+    }
+  }
+
+  private StackOutputs() {
+
+  }
+}
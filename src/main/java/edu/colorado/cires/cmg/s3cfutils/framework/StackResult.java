@@ -0,0 +1,86 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Stack;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Final state of a stack after an operation completed
+ */
+public class StackResult {
+
+  private final String stackName;
+  private final String stackId;
+  private final String stackStatus;
+  private final List<Output> outputs;
+  private final Instant lastUpdatedTime;
+
+  public StackResult(String stackName, String stackId, String stackStatus, List<Output> outputs, Instant lastUpdatedTime) {
+    this.stackName = stackName;
+    this.stackId = stackId;
+    this.stackStatus = stackStatus;
+    this.outputs = Collections.unmodifiableList(new ArrayList<>(outputs));
+    this.lastUpdatedTime = lastUpdatedTime;
+  }
+
+  /**
+   * Creates a result from a described stack
+   * @param stack the described {@link Stack}
+   * @return the {@link StackResult}
+   */
+  public static StackResult fromStack(Stack stack) {
+    return new StackResult(
+        stack.getStackName(),
+        stack.getStackId(),
+        stack.getStackStatus(),
+        stack.getOutputs() == null ? Collections.<Output>emptyList() : stack.getOutputs(),
+        stack.getLastUpdatedTime() == null ? null : stack.getLastUpdatedTime().toInstant());
+  }
+
+  /**
+   * Creates a result from the snapshot of a stack that was left unchanged
+   * @param state the {@link StackState} of an existing stack
+   * @return the {@link StackResult}
+   */
+  public static StackResult fromState(StackState state) {
+    return new StackResult(state.getStackName(), state.getStackId(), state.getStackStatus(), state.getOutputs(), state.getLastUpdatedTime());
+  }
+
+  public String getStackName() {
+    return stackName;
+  }
+
+  /**
+   * @return the unique stack id, null if a deleted stack did not exist
+   */
+  public String getStackId() {
+    return stackId;
+  }
+
+  public String getStackStatus() {
+    return stackStatus;
+  }
+
+  /**
+   * @return List of {@link Output} if outputs were included in the template
+   */
+  public List<Output> getOutputs() {
+    return outputs;
+  }
+
+  /**
+   * @return the time of the last update, null if the stack was never updated
+   */
+  public Instant getLastUpdatedTime() {
+    return lastUpdatedTime;
+  }
+
+  @Override
+  public String toString() {
+    return "StackResult{stackName='" + stackName + "', stackId='" + stackId + "', stackStatus='" + stackStatus + "', outputs=" + outputs.size()
+        + ", lastUpdatedTime=" + lastUpdatedTime + "}";
+  }
+}
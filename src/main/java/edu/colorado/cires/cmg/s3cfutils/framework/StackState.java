@@ -0,0 +1,123 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.Tag;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of a stack taken with a single describe request. A stack that does not exist is a normal result.
+ */
+public class StackState {
+
+  private final String stackName;
+  private final boolean exists;
+  private final String stackId;
+  private final String stackStatus;
+  private final List<Output> outputs;
+  private final Map<String, String> tags;
+  private final Instant creationTime;
+  private final Instant lastUpdatedTime;
+
+  private StackState(String stackName, boolean exists, String stackId, String stackStatus, List<Output> outputs, Map<String, String> tags,
+      Instant creationTime, Instant lastUpdatedTime) {
+    this.stackName = stackName;
+    this.exists = exists;
+    this.stackId = stackId;
+    this.stackStatus = stackStatus;
+    this.outputs = Collections.unmodifiableList(outputs);
+    this.tags = Collections.unmodifiableMap(tags);
+    this.creationTime = creationTime;
+    this.lastUpdatedTime = lastUpdatedTime;
+  }
+
+  /**
+   * Creates the state of a stack that does not exist
+   * @param stackName the name of the stack
+   * @return the {@link StackState}
+   */
+  public static StackState missing(String stackName) {
+    return new StackState(stackName, false, null, null, new ArrayList<>(0), new LinkedHashMap<>(), null, null);
+  }
+
+  /**
+   * Creates the state of a described stack
+   * @param stack the described {@link Stack}
+   * @return the {@link StackState}
+   */
+  public static StackState fromStack(Stack stack) {
+    Map<String, String> tags = new LinkedHashMap<>();
+    if (stack.getTags() != null) {
+      for (Tag tag : stack.getTags()) {
+        tags.put(tag.getKey(), tag.getValue());
+      }
+    }
+    return new StackState(
+        stack.getStackName(),
+        true,
+        stack.getStackId(),
+        stack.getStackStatus(),
+        stack.getOutputs() == null ? new ArrayList<>(0) : new ArrayList<>(stack.getOutputs()),
+        tags,
+        stack.getCreationTime() == null ? null : stack.getCreationTime().toInstant(),
+        stack.getLastUpdatedTime() == null ? null : stack.getLastUpdatedTime().toInstant());
+  }
+
+  public String getStackName() {
+    return stackName;
+  }
+
+  /**
+   * @return true if the stack exists
+   */
+  public boolean exists() {
+    return exists;
+  }
+
+  public String getStackId() {
+    return stackId;
+  }
+
+  /**
+   * @return the stack status, null if the stack does not exist
+   */
+  public String getStackStatus() {
+    return stackStatus;
+  }
+
+  /**
+   * @return List of {@link Output} if outputs were included in the template
+   */
+  public List<Output> getOutputs() {
+    return outputs;
+  }
+
+  /**
+   * @return stack tags by key
+   */
+  public Map<String, String> getTags() {
+    return tags;
+  }
+
+  public Instant getCreationTime() {
+    return creationTime;
+  }
+
+  /**
+   * @return the time of the last update, null if the stack was never updated
+   */
+  public Instant getLastUpdatedTime() {
+    return lastUpdatedTime;
+  }
+
+  @Override
+  public String toString() {
+    return "StackState{stackName='" + stackName + "', exists=" + exists + ", stackStatus='" + stackStatus + "', lastUpdatedTime=" + lastUpdatedTime
+        + "}";
+  }
+}
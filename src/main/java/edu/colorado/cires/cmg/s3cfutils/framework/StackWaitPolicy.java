@@ -0,0 +1,97 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.time.Duration;
+
+/**
+ * Polling intervals used while waiting for a stack operation. Polling starts at the minimum delay, backs off towards
+ * the maximum delay while no new stack events are published and returns to the minimum delay when events arrive.
+ */
+public class StackWaitPolicy {
+
+  private final Duration minDelay;
+  private final Duration maxDelay;
+  private final double backoffMultiplier;
+  private final Duration timeout;
+
+  private StackWaitPolicy(Builder builder) {
+    minDelay = builder.minDelay;
+    maxDelay = builder.maxDelay;
+    backoffMultiplier = builder.backoffMultiplier;
+    timeout = builder.timeout;
+  }
+
+  public Duration getMinDelay() {
+    return minDelay;
+  }
+
+  public Duration getMaxDelay() {
+    return maxDelay;
+  }
+
+  public double getBackoffMultiplier() {
+    return backoffMultiplier;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Computes the delay before the next poll
+   * @param currentDelayMillis the delay used before the last poll
+   * @param progressed true if the last poll returned new stack events
+   * @return the next delay in milliseconds
+   */
+  long nextDelayMillis(long currentDelayMillis, boolean progressed) {
+    if (progressed) {
+      return minDelay.toMillis();
+    }
+    return Math.min(maxDelay.toMillis(), Math.max(minDelay.toMillis(), (long) (currentDelayMillis * backoffMultiplier)));
+  }
+
+  public static class Builder {
+
+    private Duration minDelay = Duration.ofSeconds(1);
+    private Duration maxDelay = Duration.ofSeconds(15);
+    private double backoffMultiplier = 1.5;
+    private Duration timeout = Duration.ofHours(2);
+
+    public static Builder configure() {
+      return new Builder();
+    }
+
+    private Builder() {
+
+    }
+
+    public Builder withMinDelay(Duration minDelay) {
+      this.minDelay = minDelay;
+      return this;
+    }
+
+    public Builder withMaxDelay(Duration maxDelay) {
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    public Builder withBackoffMultiplier(double backoffMultiplier) {
+      this.backoffMultiplier = backoffMultiplier;
+      return this;
+    }
+
+    public Builder withTimeout(Duration timeout) {
+      this.timeout = timeout;
+      return this;
+    }
+
+    public StackWaitPolicy build() {
+      if (minDelay.compareTo(maxDelay) > 0) {
+        throw new IllegalArgumentException("minDelay must not be greater than maxDelay");
+      }
+      if (backoffMultiplier < 1D) {
+        throw new IllegalArgumentException("backoffMultiplier must be at least 1");
+      }
+      return new StackWaitPolicy(this);
+    }
+  }
+}
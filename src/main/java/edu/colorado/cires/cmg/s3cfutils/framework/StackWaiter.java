@@ -0,0 +1,42 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.services.cloudformation.model.Stack;
+
+/**
+ * Blocks the calling thread while a {@link StackEventTail} is polled according to a {@link StackWaitPolicy}
+ */
+class StackWaiter {
+
+  private final StackWaitPolicy policy;
+
+  StackWaiter(StackWaitPolicy policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * Polls until the stack operation completes
+   * @param tail the stack operation events
+   * @return the described {@link Stack} after the operation completed
+   * @throws StackOperationFailedException if the operation fails
+   */
+  Stack await(StackEventTail tail) {
+    long deadline = System.currentTimeMillis() + policy.getTimeout().toMillis();
+    long delay = policy.getMinDelay().toMillis();
+    while (true) {
+      Stack stack = tail.poll();
+      if (stack != null) {
+        return stack;
+      }
+      delay = policy.nextDelayMillis(delay, tail.hasProgressed());
+      if (System.currentTimeMillis() + delay > deadline) {
+        throw new IllegalStateException("Timed out waiting for stack: " + tail.getStackName());
+      }
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted waiting for stack: " + tail.getStackName(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of synchronizing local content with a bucket
+ */
+public class SyncResult {
+
+  private final List<String> transferredKeys;
+  private final List<String> deletedKeys;
+  private final int unchangedCount;
+  private final long transferredBytes;
+
+  public SyncResult(List<String> transferredKeys, List<String> deletedKeys, int unchangedCount, long transferredBytes) {
+    this.transferredKeys = Collections.unmodifiableList(transferredKeys);
+    this.deletedKeys = Collections.unmodifiableList(deletedKeys);
+    this.unchangedCount = unchangedCount;
+    this.transferredBytes = transferredBytes;
+  }
+
+  /**
+   * @return keys of new or changed objects that were transferred
+   */
+  public List<String> getTransferredKeys() {
+    return transferredKeys;
+  }
+
+  /**
+   * @return keys of objects that were deleted because they are no longer present in the source
+   */
+  public List<String> getDeletedKeys() {
+    return deletedKeys;
+  }
+
+  /**
+   * @return the number of objects that already matched and were skipped
+   */
+  public int getUnchangedCount() {
+    return unchangedCount;
+  }
+
+  /**
+   * @return the total number of bytes transferred
+   */
+  public long getTransferredBytes() {
+    return transferredBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "SyncResult{transferred=" + transferredKeys.size() + ", deleted=" + deletedKeys.size() + ", unchanged=" + unchangedCount
+        + ", transferredBytes=" + transferredBytes + "}";
+  }
+}
@@ -0,0 +1,347 @@
+package edu.colorado.cires.cmg.s3cfutils.framework;
+
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.SyncProgressListener;
+import com.amazonaws.services.s3.transfer.PersistableTransfer;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pause state of an upload or download, kept in a file next to the local file being transferred so a later transfer
+ * with the same arguments continues from the parts already completed. The file records the bucket, key and local file of
+ * the transfer. For uploads it holds the size and modification time of the source and the serialized
+ * {@link PersistableTransfer} of the {@link TransferManager}, for ranged downloads the ETag, size and part size of the
+ * object and the parts already written. State that does not match the current transfer is discarded.
+ */
+final class TransferStateFile {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransferStateFile.class);
+
+  /**
+   * Appended to the name of the local file to name its state file
+   */
+  static final String SUFFIX = ".s3transfer";
+
+  private static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
+  private final Path path;
+  private final State expected;
+
+  private TransferStateFile(Path localFile, State expected) {
+    this.path = localFile.resolveSibling(localFile.getFileName() + SUFFIX);
+    this.expected = expected;
+  }
+
+  /**
+   * @param source the file being uploaded
+   * @param bucket the target bucket name
+   * @param key the target key
+   * @return the state file of the upload
+   */
+  static TransferStateFile forUpload(Path source, String bucket, String key) {
+    State state = new State();
+    state.setOperation("upload");
+    state.setBucket(bucket);
+    state.setKey(key);
+    state.setFile(source.toAbsolutePath().toString());
+    try {
+      state.setFileSize(Files.size(source));
+      state.setFileLastModified(Files.getLastModifiedTime(source).toMillis());
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read file attributes: " + source, e);
+    }
+    return new TransferStateFile(source, state);
+  }
+
+  /**
+   * @param bucket the source bucket name
+   * @param key the source key
+   * @param target the file being downloaded to
+   * @return the state file of the download
+   */
+  static TransferStateFile forDownload(String bucket, String key, Path target) {
+    State state = new State();
+    state.setOperation("download");
+    state.setBucket(bucket);
+    state.setKey(key);
+    state.setFile(target.toAbsolutePath().toString());
+    return new TransferStateFile(target, state);
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  /**
+   * Reads the pause state of a previous upload with the same arguments
+   * @param type the expected {@link PersistableTransfer} type
+   * @param <T> the {@link PersistableTransfer} type
+   * @return the pause state, or null if there is none or it belongs to a different transfer
+   */
+  <T extends PersistableTransfer> T read(Class<T> type) {
+    State state = read();
+    if (state != null && state.getTransfer() != null) {
+      try {
+        PersistableTransfer transfer = PersistableTransfer.deserializeFrom(state.getTransfer());
+        if (type.isInstance(transfer)) {
+          return type.cast(transfer);
+        }
+      } catch (Exception e) {
+        LOGGER.warn("Unable to read transfer state '{}'", path, e);
+      }
+    }
+    discard();
+    return null;
+  }
+
+  /**
+   * Reads the parts written by a previous ranged download of the same object
+   * @param eTag the ETag of the object
+   * @param contentLength the size of the object
+   * @param partSize the part size of the download
+   * @return the numbers of the parts already written, empty if there is no state or it belongs to a different transfer
+   */
+  Set<Integer> readCompletedParts(String eTag, long contentLength, long partSize) {
+    State state = read();
+    if (state != null && state.getCompletedParts() != null && Objects.equals(eTag, state.getETag())
+        && Objects.equals(contentLength, state.getContentLength()) && Objects.equals(partSize, state.getPartSize())) {
+      return new TreeSet<>(state.getCompletedParts());
+    }
+    discard();
+    return new TreeSet<>();
+  }
+
+  /**
+   * @return the state file contents if they belong to this transfer, otherwise null
+   */
+  private State read() {
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+    try {
+      State state = OBJECT_MAPPER.readValue(path.toFile(), State.class);
+      return expected.matches(state) ? state : null;
+    } catch (Exception e) {
+      LOGGER.warn("Unable to read transfer state '{}'", path, e);
+      return null;
+    }
+  }
+
+  private void discard() {
+    if (Files.exists(path)) {
+      LOGGER.info("Discarding Transfer State: {}", path);
+      delete();
+    }
+  }
+
+  /**
+   * Replaces the state file with the pause state of the current upload
+   * @param transfer the pause state
+   */
+  void write(PersistableTransfer transfer) {
+    State state = expected.copy();
+    state.setTransfer(transfer.serialize());
+    write(state);
+  }
+
+  /**
+   * Replaces the state file with the parts written so far by the current ranged download
+   * @param eTag the ETag of the object
+   * @param contentLength the size of the object
+   * @param partSize the part size of the download
+   * @param completedParts the numbers of the parts already written
+   */
+  void writeCompletedParts(String eTag, long contentLength, long partSize, Collection<Integer> completedParts) {
+    State state = expected.copy();
+    state.setETag(eTag);
+    state.setContentLength(contentLength);
+    state.setPartSize(partSize);
+    state.setCompletedParts(new ArrayList<>(completedParts));
+    write(state);
+  }
+
+  private synchronized void write(State state) {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      OBJECT_MAPPER.writeValue(tmp.toFile(), state);
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the transfer itself is not affected, it only cannot be resumed
+      LOGGER.warn("Unable to write transfer state '{}'", path, e);
+    }
+  }
+
+  /**
+   * Removes the state file, once the transfer has completed or its state is unusable
+   */
+  void delete() {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to delete transfer state '{}'", path, e);
+    }
+  }
+
+  /**
+   * @return a listener writing the pause state as soon as the {@link TransferManager} makes it available
+   */
+  S3ProgressListener listener() {
+    return new StateListener();
+  }
+
+  /**
+   * Writes the pause state on the transfer thread, so it is never written after the state file of a completed upload
+   * has been deleted
+   */
+  private final class StateListener extends SyncProgressListener implements S3ProgressListener {
+
+    @Override
+    public void onPersistableTransfer(PersistableTransfer persistableTransfer) {
+      write(persistableTransfer);
+    }
+
+    @Override
+    public void progressChanged(ProgressEvent progressEvent) {
+      // only the pause state is recorded
+    }
+  }
+
+  /**
+   * Contents of the state file
+   */
+  public static class State {
+
+    private String operation;
+    private String bucket;
+    private String key;
+    private String file;
+    private Long fileSize;
+    private Long fileLastModified;
+    private String transfer;
+    private String eTag;
+    private Long contentLength;
+    private Long partSize;
+    private List<Integer> completedParts;
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public void setOperation(String operation) {
+      this.operation = operation;
+    }
+
+    public String getBucket() {
+      return bucket;
+    }
+
+    public void setBucket(String bucket) {
+      this.bucket = bucket;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    public String getFile() {
+      return file;
+    }
+
+    public void setFile(String file) {
+      this.file = file;
+    }
+
+    public Long getFileSize() {
+      return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+      this.fileSize = fileSize;
+    }
+
+    public Long getFileLastModified() {
+      return fileLastModified;
+    }
+
+    public void setFileLastModified(Long fileLastModified) {
+      this.fileLastModified = fileLastModified;
+    }
+
+    public String getTransfer() {
+      return transfer;
+    }
+
+    public void setTransfer(String transfer) {
+      this.transfer = transfer;
+    }
+
+    public String getETag() {
+      return eTag;
+    }
+
+    public void setETag(String eTag) {
+      this.eTag = eTag;
+    }
+
+    public Long getContentLength() {
+      return contentLength;
+    }
+
+    public void setContentLength(Long contentLength) {
+      this.contentLength = contentLength;
+    }
+
+    public Long getPartSize() {
+      return partSize;
+    }
+
+    public void setPartSize(Long partSize) {
+      this.partSize = partSize;
+    }
+
+    public List<Integer> getCompletedParts() {
+      return completedParts;
+    }
+
+    public void setCompletedParts(List<Integer> completedParts) {
+      this.completedParts = completedParts;
+    }
+
+    private boolean matches(State other) {
+      return Objects.equals(operation, other.operation)
+          && Objects.equals(bucket, other.bucket)
+          && Objects.equals(key, other.key)
+          && Objects.equals(file, other.file)
+          && Objects.equals(fileSize, other.fileSize)
+          && Objects.equals(fileLastModified, other.fileLastModified);
+    }
+
+    private State copy() {
+      State copy = new State();
+      copy.setOperation(operation);
+      copy.setBucket(bucket);
+      copy.setKey(key);
+      copy.setFile(file);
+      copy.setFileSize(fileSize);
+      copy.setFileLastModified(fileLastModified);
+      return copy;
+    }
+  }
+}
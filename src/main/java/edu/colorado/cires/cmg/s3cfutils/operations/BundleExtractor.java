@@ -0,0 +1,247 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.colorado.cires.cmg.s3cfutils.framework.ObjectMapperCreator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Incrementally extracts a zip file. A marker file next to the zip records the digest of the zip and the CRC of every
+ * extracted entry. A later extraction of the same zip does nothing, and a rebuilt zip only rewrites the entries whose
+ * CRC changed and deletes the files of entries that were removed. Entries are written in parallel and the CRC of
+ * every written entry is verified.
+ */
+final class BundleExtractor {
+
+  private static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
+  /**
+   * Counts of an extraction
+   */
+  static final class Result {
+
+    private final int extracted;
+    private final int unchanged;
+    private final int deleted;
+
+    private Result(int extracted, int unchanged, int deleted) {
+      this.extracted = extracted;
+      this.unchanged = unchanged;
+      this.deleted = deleted;
+    }
+
+    int getExtracted() {
+      return extracted;
+    }
+
+    int getUnchanged() {
+      return unchanged;
+    }
+
+    int getDeleted() {
+      return deleted;
+    }
+  }
+
+  /**
+   * Contents of the marker file
+   */
+  static final class Marker {
+
+    private String zipDigest;
+    private Map<String, Long> entryCrcs = new TreeMap<>();
+
+    public String getZipDigest() {
+      return zipDigest;
+    }
+
+    public void setZipDigest(String zipDigest) {
+      this.zipDigest = zipDigest;
+    }
+
+    public Map<String, Long> getEntryCrcs() {
+      return entryCrcs;
+    }
+
+    public void setEntryCrcs(Map<String, Long> entryCrcs) {
+      this.entryCrcs = entryCrcs;
+    }
+  }
+
+  private final int threads;
+
+  /**
+   * @param threads the number of entries written at the same time
+   */
+  BundleExtractor(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Extracts the entries of a zip file that are missing or changed since the last extraction
+   * @param zip the zip file
+   * @param targetDir the directory the entries are extracted to
+   * @return {@link Result} with the number of extracted, unchanged and deleted files
+   */
+  Result extract(Path zip, Path targetDir) throws IOException {
+    Path markerFile = targetDir.resolve("." + zip.getFileName() + ".extracted.json");
+    Marker previous = readMarker(markerFile);
+    String zipDigest = sha256(zip);
+
+    try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+      Map<String, ZipEntry> entries = new TreeMap<>();
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry entry = zipEntries.nextElement();
+        entries.put(entry.getName(), entry);
+      }
+
+      List<ZipEntry> changed = new ArrayList<>();
+      Marker marker = new Marker();
+      marker.setZipDigest(zipDigest);
+      for (ZipEntry entry : entries.values()) {
+        Path destination = resolve(targetDir, entry.getName());
+        if (entry.isDirectory()) {
+          Files.createDirectories(destination);
+          continue;
+        }
+        marker.getEntryCrcs().put(entry.getName(), entry.getCrc());
+        Long previousCrc = previous.getEntryCrcs().get(entry.getName());
+        boolean current = previousCrc != null && previousCrc == entry.getCrc()
+            && Files.isRegularFile(destination) && Files.size(destination) == entry.getSize();
+        if (!current) {
+          changed.add(entry);
+        }
+      }
+
+      if (changed.isEmpty() && zipDigest.equals(previous.getZipDigest())) {
+        return new Result(0, marker.getEntryCrcs().size(), 0);
+      }
+
+      // the marker is removed first so an interrupted extraction is repeated in full rather than trusted
+      Files.deleteIfExists(markerFile);
+
+      writeEntries(zipFile, changed, targetDir);
+
+      int deleted = 0;
+      for (String name : previous.getEntryCrcs().keySet()) {
+        if (!marker.getEntryCrcs().containsKey(name) && Files.deleteIfExists(resolve(targetDir, name))) {
+          deleted++;
+        }
+      }
+
+      OBJECT_MAPPER.writeValue(markerFile.toFile(), marker);
+
+      return new Result(changed.size(), marker.getEntryCrcs().size() - changed.size(), deleted);
+    }
+  }
+
+  private void writeEntries(ZipFile zipFile, List<ZipEntry> entries, Path targetDir) throws IOException {
+    if (entries.isEmpty()) {
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, entries.size())));
+    try {
+      List<Future<Void>> futures = new ArrayList<>(entries.size());
+      for (ZipEntry entry : entries) {
+        futures.add(executor.submit(() -> {
+          writeEntry(zipFile, entry, resolve(targetDir, entry.getName()));
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while extracting " + zipFile.getName(), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException("Unable to extract " + zipFile.getName(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes one entry with a channel transfer and verifies its CRC
+   */
+  private static void writeEntry(ZipFile zipFile, ZipEntry entry, Path destination) throws IOException {
+    Path parent = destination.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    CRC32 crc = new CRC32();
+    try (CheckedInputStream in = new CheckedInputStream(zipFile.getInputStream(entry), crc);
+        ReadableByteChannel source = Channels.newChannel(in);
+        FileChannel target = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      long position = 0L;
+      long transferred;
+      while ((transferred = target.transferFrom(source, position, Long.MAX_VALUE - position)) > 0L) {
+        position += transferred;
+      }
+    }
+    if (entry.getCrc() != -1L && crc.getValue() != entry.getCrc()) {
+      Files.deleteIfExists(destination);
+      throw new IOException("CRC mismatch extracting " + entry.getName() + ": expected " + entry.getCrc() + " but was " + crc.getValue());
+    }
+  }
+
+  /**
+   * Resolves an entry name within the target directory, rejecting names that would escape it
+   */
+  private static Path resolve(Path targetDir, String name) throws IOException {
+    Path root = targetDir.toAbsolutePath().normalize();
+    Path destination = root.resolve(name).normalize();
+    if (!destination.startsWith(root)) {
+      throw new IOException("Zip entry is outside of the target directory: " + name);
+    }
+    return destination;
+  }
+
+  private static Marker readMarker(Path markerFile) {
+    if (Files.isRegularFile(markerFile)) {
+      try {
+        return OBJECT_MAPPER.readValue(markerFile.toFile(), Marker.class);
+      } catch (IOException e) {
+        // an unreadable marker only costs a full extraction
+      }
+    }
+    return new Marker();
+  }
+
+  private static String sha256(Path file) throws IOException {
+    MessageDigest digest = StackFingerprint.sha256();
+    byte[] buffer = new byte[8192];
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+      while (in.read(buffer) != -1) {
+        // reading updates the digest
+      }
+    }
+    return StackFingerprint.toHex(digest.digest());
+  }
+}
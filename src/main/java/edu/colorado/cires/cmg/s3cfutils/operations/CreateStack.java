@@ -5,9 +5,13 @@ import static edu.colorado.cires.cmg.s3cfutils.operations.OperationUtils.writeOu
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperations;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetrics;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationPhase;
 import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import edu.colorado.cires.cmg.s3cfutils.framework.PhaseTimer;
 import edu.colorado.cires.cmg.s3cfutils.framework.S3Operations;
 import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackResult;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -34,11 +38,17 @@ public class CreateStack {
   private final CloudFormationOperations cf;
   private final S3Operations s3;
   private final ObjectMapper objectMapper;
+  private final OperationMetrics metrics;
 
   public CreateStack(CloudFormationOperations cf, S3Operations s3, ObjectMapper objectMapper) {
+    this(cf, s3, objectMapper, OperationMetrics.noop());
+  }
+
+  public CreateStack(CloudFormationOperations cf, S3Operations s3, ObjectMapper objectMapper, OperationMetrics metrics) {
     this.cf = cf;
     this.s3 = s3;
     this.objectMapper = objectMapper;
+    this.metrics = metrics;
   }
 
   /**
@@ -62,13 +72,18 @@ public class CreateStack {
 
     Path deployParams = Paths.get(deploymentParamsPath);
     Path params = Paths.get(stackParamsPath);
-    List<ParameterKeyValue> deploymentParameters = getDeploymentParameters(deployParams, stackContext);
-    List<ParameterKeyValue> stackParameters = getParameters(params, stackContext);
+    List<ParameterKeyValue> deploymentParameters;
+    List<ParameterKeyValue> stackParameters;
+    try (PhaseTimer timer = metrics.start(OperationPhase.PARAMETER_LOAD, id)) {
+      deploymentParameters = getDeploymentParameters(deployParams, stackContext);
+      stackParameters = getParameters(params, stackContext);
+      timer.complete();
+    }
 
     Path targetDir = Paths.get(baseDir).resolve("target");
     writeIdFile(targetDir, id);
 
-    OperationUtils.createOrUpdateStack(
+    StackResult result = OperationUtils.createOrUpdateStack(
         cf,
         s3,
         stackContext,
@@ -77,13 +92,17 @@ public class CreateStack {
         deploymentParameters,
         stackParameters,
         cfPrefix,
-        applicationStackFileName
+        applicationStackFileName,
+        metrics
     );
 
     LOGGER.info("Done Creating AWS Test Resources: {}", id);
 
     if (writeStackOutputs) {
-      writeOutputsToFile(cf, targetDir, id, stackContext);
+      try (PhaseTimer timer = metrics.start(OperationPhase.OUTPUT_WRITE, stackContext.getStackName())) {
+        writeOutputsToFile(result, targetDir);
+        timer.complete();
+      }
     }
 
   }
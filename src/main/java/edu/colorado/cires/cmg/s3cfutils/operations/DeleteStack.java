@@ -1,7 +1,11 @@
 package edu.colorado.cires.cmg.s3cfutils.operations;
 
 import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperations;
+import edu.colorado.cires.cmg.s3cfutils.framework.EmptyBucketStatus;
 import edu.colorado.cires.cmg.s3cfutils.framework.ITUtils;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetrics;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationPhase;
+import edu.colorado.cires.cmg.s3cfutils.framework.PhaseTimer;
 import edu.colorado.cires.cmg.s3cfutils.framework.S3Operations;
 import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
 import org.slf4j.Logger;
@@ -9,6 +13,10 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Utilities for deleting a CloudFormation stack
@@ -19,10 +27,29 @@ public class DeleteStack {
 
   private final CloudFormationOperations cf;
   private final S3Operations s3;
+  private final OperationMetrics metrics;
+  private final boolean concurrentTeardown;
 
   public DeleteStack(CloudFormationOperations cf, S3Operations s3) {
+    this(cf, s3, OperationMetrics.noop());
+  }
+
+  public DeleteStack(CloudFormationOperations cf, S3Operations s3, OperationMetrics metrics) {
+    this(cf, s3, metrics, false);
+  }
+
+  /**
+   * @param cf {@link CloudFormationOperations} for interaction between cloud formation templates and stacks
+   * @param s3 {@link S3Operations} for interaction with S3 objects
+   * @param metrics {@link OperationMetrics} receiving the phase timings
+   * @param concurrentTeardown if true the application stack is deleted while the deployment bucket is emptied, see
+   * {@link #run(StackContext, boolean)}
+   */
+  public DeleteStack(CloudFormationOperations cf, S3Operations s3, OperationMetrics metrics, boolean concurrentTeardown) {
     this.cf = cf;
     this.s3 = s3;
+    this.metrics = metrics;
+    this.concurrentTeardown = concurrentTeardown;
   }
 
   /**
@@ -30,8 +57,9 @@ public class DeleteStack {
    * @param bucket the bucket name
    */
   private void emptyBucket(String bucket) {
-    try {
-      OperationUtils.emptyBucket(s3, bucket);
+    try (PhaseTimer timer = metrics.start(OperationPhase.BUCKET_EMPTY, bucket)) {
+      EmptyBucketStatus status = OperationUtils.emptyBucketWithStatus(s3, bucket);
+      timer.complete().with("deleted", status.getDeletedCount()).with("failed", status.getFailures().size());
     } catch (Exception e) {
       LOGGER.warn("Unable to empty bucket '{}'", bucket, e);
     }
@@ -46,27 +74,53 @@ public class DeleteStack {
     String id = ITUtils.readId(targetDir);
     LOGGER.info("Deleting AWS Test Resources: {}", id);
     StackContext stackContext = StackContext.Builder.configureTest(id).build();
-    emptyBucket(stackContext.getDeploymentBucketName());
-    if (!deploymentOnly) {
-      deleteStack(stackContext.getStackName());
-    }
-    deleteStack(stackContext.getDeploymentStackName());
+    tearDown(stackContext, deploymentOnly);
 
     LOGGER.info("Done Deleting AWS Test Resources: {}", id);
   }
 
+  /**
+   * Empties deployment bucket, deletes application stack and deletes deployment stack. With concurrent teardown the
+   * application stack is deleted while the bucket is emptied, the bucket is swept once more after the application stack
+   * is gone and the deployment stack is deleted last. Failures of each step are logged and do not stop the following
+   * steps.
+   * @param stackContext the uniquely identifying {@link StackContext} for the stacks
+   * @param deploymentOnly if true the application stack is not deleted
+   */
   public void run(StackContext stackContext, boolean deploymentOnly) {
     String stackName = stackContext.getStackName();
     LOGGER.info("Deleting AWS Test Resources: {}", stackName);
-    emptyBucket(stackContext.getDeploymentBucketName());
-    if (!deploymentOnly) {
-      deleteStack(stackName);
-    }
-    deleteStack(stackContext.getDeploymentStackName());
+    tearDown(stackContext, deploymentOnly);
 
     LOGGER.info("Done Deleting AWS Test Resources: {}", stackName);
   }
 
+  private void tearDown(StackContext stackContext, boolean deploymentOnly) {
+    if (deploymentOnly) {
+      emptyBucket(stackContext.getDeploymentBucketName());
+    } else if (concurrentTeardown) {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Future<?> stackDeleted = executor.submit(() -> deleteStack(stackContext.getStackName()));
+        emptyBucket(stackContext.getDeploymentBucketName());
+        stackDeleted.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while deleting stack: " + stackContext.getStackName(), e);
+      } catch (ExecutionException e) {
+        LOGGER.warn("Unable to delete stack '{}'", stackContext.getStackName(), e.getCause());
+      } finally {
+        executor.shutdown();
+      }
+      // objects written while the application stack was being deleted
+      emptyBucket(stackContext.getDeploymentBucketName());
+    } else {
+      emptyBucket(stackContext.getDeploymentBucketName());
+      deleteStack(stackContext.getStackName());
+    }
+    deleteStack(stackContext.getDeploymentStackName());
+  }
+
   /**
    * Deletes a stack and waits for completion
    * @param stackName the stack name
@@ -75,8 +129,9 @@ public class DeleteStack {
 
     LOGGER.info("Deleting Stack: {}", stackName);
 
-    try {
+    try (PhaseTimer timer = metrics.start(OperationPhase.STACK_DELETE, stackName)) {
       cf.deleteStackAndWait(stackName);
+      timer.complete();
     } catch (Exception e) {
       LOGGER.warn("Unable to delete stack '{}'", stackName, e);
     }
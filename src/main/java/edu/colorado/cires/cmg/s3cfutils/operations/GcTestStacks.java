@@ -0,0 +1,211 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperationsImpl;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetrics;
+import edu.colorado.cires.cmg.s3cfutils.framework.S3Operations;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds test stacks left behind by {@link CreateStack} runs that were never deleted, such as those of aborted CI jobs,
+ * and tears them down with the concurrent teardown of {@link DeleteStack}. Test stacks are recognized by the
+ * {@link StackContext.Builder#configureTest(String)} naming scheme, a test-&lt;8 lower case letters or digits&gt; id
+ * followed by -deployment or -stack. Listing the stacks of the account needs {@link CloudFormationOperationsImpl}.
+ */
+public class GcTestStacks {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(GcTestStacks.class);
+
+  private static final Pattern TEST_STACK_NAME = Pattern.compile("^(test-[a-z0-9]{8})-(deployment|stack)$");
+
+  private final CloudFormationOperationsImpl cf;
+  private final S3Operations s3;
+  private final OperationMetrics metrics;
+
+  public GcTestStacks(CloudFormationOperationsImpl cf, S3Operations s3) {
+    this(cf, s3, OperationMetrics.noop());
+  }
+
+  public GcTestStacks(CloudFormationOperationsImpl cf, S3Operations s3, OperationMetrics metrics) {
+    this.cf = cf;
+    this.s3 = s3;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Tears down matching test stacks: empties the deployment bucket, deletes the application stack and deletes the
+   * deployment stack of each. Test stacks with a stack operation in progress are skipped, they may belong to a running
+   * job.
+   * @param minAge only test stacks whose most recently created stack is at least this old are collected
+   * @param statuses only test stacks with a stack in one of these statuses are collected, all test stacks when empty
+   * @param parallelism the number of test stacks torn down at the same time
+   * @param dryRun if true matching test stacks are only logged
+   * @return {@link Summary} of the collected test stacks
+   */
+  public Summary run(Duration minAge, Set<String> statuses, int parallelism, boolean dryRun) {
+
+    long start = System.currentTimeMillis();
+    Instant createdBefore = Instant.now().minus(minAge);
+
+    LOGGER.info("Collecting Test Stacks: older than {}, statuses {}, parallelism {}{}", minAge, statuses.isEmpty() ? "any" : statuses,
+        parallelism, dryRun ? ", dry run" : "");
+
+    Map<String, List<StackSummary>> testStacks = new TreeMap<>();
+    for (StackSummary summary : cf.listStacks()) {
+      Matcher matcher = TEST_STACK_NAME.matcher(summary.getStackName());
+      if (matcher.matches()) {
+        testStacks.computeIfAbsent(matcher.group(1), id -> new ArrayList<>()).add(summary);
+      }
+    }
+
+    List<String> matched = new ArrayList<>();
+    int skipped = 0;
+    for (Map.Entry<String, List<StackSummary>> entry : testStacks.entrySet()) {
+      String id = entry.getKey();
+      List<StackSummary> stacks = entry.getValue();
+      if (stacks.stream().anyMatch(stack -> stack.getStackStatus().endsWith("_IN_PROGRESS"))) {
+        LOGGER.info("Skipping Test Stack With Operation In Progress: {} {}", id, describe(stacks));
+        skipped++;
+      } else if (stacks.stream().anyMatch(stack -> stack.getCreationTime().toInstant().isAfter(createdBefore))) {
+        skipped++;
+      } else if (!statuses.isEmpty() && stacks.stream().noneMatch(stack -> statuses.contains(stack.getStackStatus()))) {
+        skipped++;
+      } else {
+        LOGGER.info("Found Leaked Test Stack: {} {}", id, describe(stacks));
+        matched.add(id);
+      }
+    }
+
+    List<String> deleted = new ArrayList<>();
+    List<String> failed = new ArrayList<>();
+    if (!dryRun && !matched.isEmpty()) {
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, matched.size())));
+      try {
+        List<Future<Boolean>> futures = new ArrayList<>(matched.size());
+        for (String id : matched) {
+          futures.add(executor.submit(() -> tearDown(id)));
+        }
+        for (int i = 0; i < matched.size(); i++) {
+          if (futures.get(i).get()) {
+            deleted.add(matched.get(i));
+          } else {
+            failed.add(matched.get(i));
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while collecting test stacks", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Unable to collect test stacks", e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    Summary summary = new Summary(matched, deleted, failed, skipped, System.currentTimeMillis() - start);
+
+    LOGGER.info("Done Collecting Test Stacks: {} found, {} deleted, {} failed, {} skipped in {} ms", matched.size(), deleted.size(),
+        failed.size(), skipped, summary.getElapsedMillis());
+    for (String id : failed) {
+      LOGGER.warn("Test Stack Was Not Fully Deleted: {}", id);
+    }
+
+    return summary;
+  }
+
+  /**
+   * Tears down one test stack
+   * @param id the test stack id
+   * @return true if neither of its stacks exists afterwards
+   */
+  private boolean tearDown(String id) {
+    StackContext stackContext = StackContext.Builder.configureTest(id).build();
+    new DeleteStack(cf, s3, metrics, true).run(stackContext, false);
+    try {
+      return !cf.stackExists(stackContext.getStackName()) && !cf.stackExists(stackContext.getDeploymentStackName());
+    } catch (Exception e) {
+      LOGGER.warn("Unable to verify deletion of '{}'", id, e);
+      return false;
+    }
+  }
+
+  private static String describe(List<StackSummary> stacks) {
+    StringBuilder sb = new StringBuilder();
+    for (StackSummary stack : stacks) {
+      sb.append(sb.length() == 0 ? "[" : ", ").append(stack.getStackName()).append(' ').append(stack.getStackStatus())
+          .append(" created ").append(stack.getCreationTime().toInstant());
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Outcome of a collection run
+   */
+  public static class Summary {
+
+    private final List<String> matched;
+    private final List<String> deleted;
+    private final List<String> failed;
+    private final int skipped;
+    private final long elapsedMillis;
+
+    public Summary(List<String> matched, List<String> deleted, List<String> failed, int skipped, long elapsedMillis) {
+      this.matched = Collections.unmodifiableList(matched);
+      this.deleted = Collections.unmodifiableList(deleted);
+      this.failed = Collections.unmodifiableList(failed);
+      this.skipped = skipped;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return ids of the test stacks that matched the filters
+     */
+    public List<String> getMatched() {
+      return matched;
+    }
+
+    /**
+     * @return ids of the test stacks that were torn down
+     */
+    public List<String> getDeleted() {
+      return deleted;
+    }
+
+    /**
+     * @return ids of the test stacks with a stack that still exists after the teardown
+     */
+    public List<String> getFailed() {
+      return failed;
+    }
+
+    /**
+     * @return the number of test stacks that were too young, did not match the statuses or had an operation in progress
+     */
+    public int getSkipped() {
+      return skipped;
+    }
+
+    /**
+     * @return the duration of the run
+     */
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+  }
+}
@@ -1,12 +1,19 @@
 package edu.colorado.cires.cmg.s3cfutils.operations;
 
 
-import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
-import com.amazonaws.services.cloudformation.model.Output;
 import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperations;
+import edu.colorado.cires.cmg.s3cfutils.framework.DeleteResult;
+import edu.colorado.cires.cmg.s3cfutils.framework.EmptyBucketStatus;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetrics;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationPhase;
 import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import edu.colorado.cires.cmg.s3cfutils.framework.PhaseTimer;
 import edu.colorado.cires.cmg.s3cfutils.framework.S3Operations;
 import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackOutputs;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackResult;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackState;
+import edu.colorado.cires.cmg.s3cfutils.framework.SyncResult;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -14,13 +21,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Enumeration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -54,34 +63,141 @@ public final class OperationUtils {
       String cfPrefix,
       String applicationStackFileName
       ) {
+    createOrUpdateStack(cf, s3, stackContext, cfBaseDir, version, deploymentParameters, stackParameters, cfPrefix, applicationStackFileName,
+        OperationMetrics.noop());
+  }
+
+  /**
+   * Creates a deployment stack and an application stack, reporting the duration of each phase
+   * @param cf {@link CloudFormationOperations} for interaction between cloud formation templates and stacks
+   * @param s3 {@link S3Operations} for interaction with S3 objects
+   * @param stackContext the uniquely identifying {@link StackContext} for the stacks
+   * @param cfBaseDir the location of the module CloudFormation templates are located in
+   * @param version the project version
+   * @param deploymentParameters List of {@link ParameterKeyValue} for deployment stack template
+   * @param stackParameters List of {@link ParameterKeyValue} for application stack template
+   * @param cfPrefix the name of the module CloudFormation templates are located in
+   * @param applicationStackFileName the application stack template file name
+   * @param metrics {@link OperationMetrics} receiving the phase timings
+   * @return {@link StackResult} of the application stack, as described at the end of its create or update or, when it
+   * is unchanged, before the deployment
+   */
+  public static StackResult createOrUpdateStack(
+      CloudFormationOperations cf,
+      S3Operations s3,
+      StackContext stackContext,
+      String cfBaseDir,
+      String version,
+      List<ParameterKeyValue> deploymentParameters,
+      List<ParameterKeyValue> stackParameters,
+      String cfPrefix,
+      String applicationStackFileName,
+      OperationMetrics metrics
+      ) {
 
     Path cfTargetDir = Paths.get(cfBaseDir).resolve("target");
     String name = String.format("%s-%s", cfPrefix, version);
     Path bundle = cfTargetDir.resolve(String.format("%s.zip", name));
     Path bundleDir = cfTargetDir.resolve(name);
 
-    if (!Files.exists(bundleDir)) {
-      unzip(bundle, cfTargetDir);
+    // the bundle zip is streamed straight to the deployment bucket, a previously extracted bundle is only used when
+    // the zip itself is not available
+    boolean streamBundle = Files.exists(bundle);
+    String entryPrefix = name + "/";
+
+    // the extracted bundle is kept in step with the zip while the stacks are deployed, so a later run without the zip
+    // never falls back to outdated templates
+    CompletableFuture<Void> extraction = streamBundle
+        ? CompletableFuture.runAsync(() -> {
+          try (PhaseTimer timer = metrics.start(OperationPhase.BUNDLE_EXTRACT, bundle.toString())) {
+            unzip(bundle, cfTargetDir);
+            timer.complete();
+          }
+        })
+        : CompletableFuture.completedFuture(null);
+
+    StackState deploymentState;
+    StackState applicationState;
+    try (PhaseTimer timer = metrics.start(OperationPhase.STACK_EXISTS, stackContext.getStackName())) {
+      CompletableFuture<StackState> deploymentStackState = CompletableFuture.supplyAsync(() -> cf.describeStack(stackContext.getDeploymentStackName()));
+      CompletableFuture<StackState> applicationStackState = CompletableFuture.supplyAsync(() -> cf.describeStack(stackContext.getStackName()));
+      deploymentState = deploymentStackState.join();
+      applicationState = applicationStackState.join();
+      timer.complete().with("deploymentStackExists", deploymentState.exists()).with("stackExists", applicationState.exists());
     }
 
-    if (!cf.stackExists(stackContext.getDeploymentStackName())) {
-      createDeploymentStack(cf, bundleDir, stackContext, deploymentParameters);
+    if (!deploymentState.exists()) {
+      try (PhaseTimer timer = metrics.start(OperationPhase.DEPLOYMENT_STACK_CREATE, stackContext.getDeploymentStackName())) {
+        if (streamBundle) {
+          createDeploymentStackFromBundle(cf, bundle, entryPrefix, stackContext, deploymentParameters);
+        } else {
+          createDeploymentStack(cf, bundleDir, stackContext, deploymentParameters);
+        }
+        timer.complete();
+      }
     }
 
-    hardSyncBucket(s3, bundleDir, stackContext.getDeploymentBucketName());
+    String fingerprint;
+    try (PhaseTimer timer = metrics.start(OperationPhase.BUNDLE_FINGERPRINT, streamBundle ? bundle.toString() : bundleDir.toString())) {
+      fingerprint = streamBundle
+          ? StackFingerprint.computeFromZip(bundle, entryPrefix, applicationStackFileName, stackParameters)
+          : StackFingerprint.compute(bundleDir, applicationStackFileName, stackParameters);
+      timer.complete();
+    }
 
-    if (!cf.stackExists(stackContext.getStackName())) {
-      try {
-        createStack(cf, stackContext, stackParameters, applicationStackFileName);
+    extraction.join();
+
+    // a deployment stack created by this run has an empty bucket, so the bundle is synchronized even if the
+    // application stack is tagged with the same fingerprint
+    if (deploymentState.exists() && isUnchanged(applicationState, fingerprint)
+        && s3.doesObjectExist(stackContext.getDeploymentBucketName(), "stack/" + applicationStackFileName)) {
+      LOGGER.info("Stack Is Up To Date, Skipping Sync And Update: {} ({})", stackContext.getStackName(), fingerprint);
+      return StackResult.fromState(applicationState);
+    }
+
+    try (PhaseTimer timer = metrics.start(OperationPhase.BUCKET_SYNC, stackContext.getDeploymentBucketName())) {
+      SyncResult result = streamBundle
+          ? syncZipBucket(s3, bundle, entryPrefix, stackContext.getDeploymentBucketName())
+          : syncBucket(s3, bundleDir, stackContext.getDeploymentBucketName());
+      timer.complete()
+          .with("files", result.getTransferredKeys().size())
+          .with("bytes", result.getTransferredBytes())
+          .with("deleted", result.getDeletedKeys().size())
+          .with("unchanged", result.getUnchangedCount())
+          .with("bytesPerSecond", result.getTransferredBytes() * 1000L / Math.max(1L, timer.getElapsedMillis()));
+    }
+
+    StackResult result;
+    if (!applicationState.exists()) {
+      try (PhaseTimer timer = metrics.start(OperationPhase.STACK_CREATE, stackContext.getStackName())) {
+        result = createStack(cf, stackContext, stackParameters, applicationStackFileName,
+            Collections.singletonMap(StackFingerprint.TAG_KEY, fingerprint));
+        timer.complete();
       } catch (Exception e) {
         LOGGER.error("Failed to create stack: {}", stackContext.getStackName());
-        new DeleteStack(cf, s3).run(stackContext, true);
+        new DeleteStack(cf, s3, metrics).run(stackContext, true);
         throw new IllegalStateException("Stack creation failed: " + e);
       }
     } else {
-      updateStack(cf, stackContext, stackParameters, applicationStackFileName);
+      Map<String, String> tags = new LinkedHashMap<>(applicationState.getTags());
+      tags.put(StackFingerprint.TAG_KEY, fingerprint);
+      try (PhaseTimer timer = metrics.start(OperationPhase.STACK_UPDATE, stackContext.getStackName())) {
+        result = updateStack(cf, stackContext, stackParameters, applicationStackFileName, tags);
+        timer.complete();
+      }
     }
 
+    return result;
+  }
+
+  /**
+   * Returns true if a stack was last deployed successfully from the same bundle and parameters. A stack whose last
+   * update rolled back or is still in progress is never considered unchanged.
+   */
+  private static boolean isUnchanged(StackState state, String fingerprint) {
+    return state.exists()
+        && fingerprint.equals(state.getTags().get(StackFingerprint.TAG_KEY))
+        && ("CREATE_COMPLETE".equals(state.getStackStatus()) || "UPDATE_COMPLETE".equals(state.getStackStatus()));
   }
 
   /**
@@ -94,18 +210,48 @@ public final class OperationUtils {
   public static void createDeploymentStack(CloudFormationOperations cf, Path bundleDir, StackContext stackContext,
       List<ParameterKeyValue> parameters) {
 
-    String stackName = stackContext.getDeploymentStackName();
+    try {
+      createDeploymentStackWithBody(cf, stackContext, parameters,
+          FileUtils.readFileToString(bundleDir.resolve("deploy/deployment-stack.yaml").toFile(), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to create deployment stack", e);
+    }
+  }
 
-    LOGGER.info("Creating Stack: {}", stackName);
+  /**
+   * Creates a deployment stack with the template read directly from the bundle zip
+   * @param cf {@link CloudFormationOperations} for interaction between cloud formation templates and stacks
+   * @param bundle location of zip file containing CloudFormation template bundle
+   * @param entryPrefix the directory of the bundle within the zip, including the trailing '/'
+   * @param stackContext the uniquely identifying {@link StackContext} for the stacks
+   * @param parameters List of {@link ParameterKeyValue} for deployment stack template
+   */
+  public static void createDeploymentStackFromBundle(CloudFormationOperations cf, Path bundle, String entryPrefix, StackContext stackContext,
+      List<ParameterKeyValue> parameters) {
 
-    try {
-      cf.createStackWithBodyAndWait(
-          stackName,
-          FileUtils.readFileToString(bundleDir.resolve("deploy/deployment-stack.yaml").toFile(), StandardCharsets.UTF_8),
-          parameters);
+    String entryName = entryPrefix + "deploy/deployment-stack.yaml";
+
+    try (ZipFile zipFile = new ZipFile(bundle.toFile())) {
+      ZipEntry entry = zipFile.getEntry(entryName);
+      if (entry == null) {
+        throw new IllegalStateException("Bundle " + bundle + " does not contain " + entryName);
+      }
+      try (InputStream in = zipFile.getInputStream(entry)) {
+        createDeploymentStackWithBody(cf, stackContext, parameters, IOUtils.toString(in, StandardCharsets.UTF_8));
+      }
     } catch (IOException e) {
       throw new RuntimeException("Unable to create deployment stack", e);
     }
+  }
+
+  private static void createDeploymentStackWithBody(CloudFormationOperations cf, StackContext stackContext, List<ParameterKeyValue> parameters,
+      String templateBody) {
+
+    String stackName = stackContext.getDeploymentStackName();
+
+    LOGGER.info("Creating Stack: {}", stackName);
+
+    cf.createStackWithBodyAndWait(stackName, templateBody, parameters);
 
     LOGGER.info("Done Creating Stack: {}", stackName);
   }
@@ -118,31 +264,65 @@ public final class OperationUtils {
    * @param applicationStackFileName the application stack template file name
    */
   public static void createStack(CloudFormationOperations cf, StackContext stackContext, List<ParameterKeyValue> parameters, String applicationStackFileName) {
+    createStack(cf, stackContext, parameters, applicationStackFileName, Collections.emptyMap());
+  }
+
+  /**
+   * Creates an application stack with tags
+   * @param cf {@link CloudFormationOperations} for interaction between cloud formation templates and stacks
+   * @param stackContext the uniquely identifying {@link StackContext} for the stacks
+   * @param parameters List of {@link ParameterKeyValue} for application stack template
+   * @param applicationStackFileName the application stack template file name
+   * @param tags tags applied to the stack
+   * @return {@link StackResult} of the created stack
+   */
+  public static StackResult createStack(CloudFormationOperations cf, StackContext stackContext, List<ParameterKeyValue> parameters,
+      String applicationStackFileName, Map<String, String> tags) {
 
     String stackName = stackContext.getStackName();
 
     LOGGER.info("Creating Stack: {}", stackName);
 
-    cf.createStackWithUrlAndWait(
+    StackResult result = cf.createStackWithUrlAndWaitForResult(
         stackName,
         String.format("https://s3.amazonaws.com/%s/stack/%s", stackContext.getDeploymentBucketName(), applicationStackFileName),
-        parameters);
+        parameters,
+        tags);
 
     LOGGER.info("Done Creating Stack: {}", stackName);
+
+    return result;
   }
 
   public static void updateStack(CloudFormationOperations cf, StackContext stackContext, List<ParameterKeyValue> parameters, String applicationStackFileName) {
+    updateStack(cf, stackContext, parameters, applicationStackFileName, Collections.emptyMap());
+  }
+
+  /**
+   * Updates an application stack and replaces its tags
+   * @param cf {@link CloudFormationOperations} for interaction between cloud formation templates and stacks
+   * @param stackContext the uniquely identifying {@link StackContext} for the stacks
+   * @param parameters List of {@link ParameterKeyValue} for application stack template
+   * @param applicationStackFileName the application stack template file name
+   * @param tags tags replacing the tags of the stack, the existing tags are kept when empty
+   * @return {@link StackResult} of the updated stack
+   */
+  public static StackResult updateStack(CloudFormationOperations cf, StackContext stackContext, List<ParameterKeyValue> parameters,
+      String applicationStackFileName, Map<String, String> tags) {
     String stackName = stackContext.getStackName();
 
     LOGGER.info("Updating Stack: {}", stackName);
 
-    cf.updateStackWithUrlAndWait(
+    StackResult result = cf.updateStackWithUrlAndWaitForResult(
         stackName,
         String.format("https://s3.amazonaws.com/%s/stack/%s", stackContext.getDeploymentBucketName(), applicationStackFileName),
-        parameters
+        parameters,
+        tags
     );
 
     LOGGER.info("Done Updating Stack: {}", stackName);
+
+    return result;
   }
 
   /**
@@ -166,29 +346,97 @@ public final class OperationUtils {
     LOGGER.info("Done Syncing {} to S3 Bucket {}", bundleDir, bucketName);
   }
 
+  /**
+   * Uploads new or changed CloudFormation templates to S3 bucket and deletes templates no longer in the bundle. Unlike
+   * {@link #hardSyncBucket(S3Operations, Path, String)} the bucket is never emptied while stacks may be reading from it.
+   * @param s3 {@link S3Operations} for interaction with S3 objects
+   * @param bundleDir location of zip file containing CloudFormation template bundle
+   * @param bucketName the bucket name
+   * @return {@link SyncResult} describing the uploaded, deleted and unchanged objects
+   */
+  public static SyncResult syncBucket(
+      S3Operations s3,
+      Path bundleDir,
+      String bucketName
+  ) {
+
+    LOGGER.info("Syncing Changes {} to S3 Bucket {}", bundleDir, bucketName);
+
+    SyncResult result = s3.syncDirectoryToBucket(bundleDir, bucketName);
+
+    LOGGER.info("Done Syncing Changes {} to S3 Bucket {}: {} uploaded ({} bytes), {} deleted, {} unchanged",
+        bundleDir, bucketName, result.getTransferredKeys().size(), result.getTransferredBytes(), result.getDeletedKeys().size(),
+        result.getUnchangedCount());
+
+    return result;
+  }
+
+  /**
+   * Uploads new or changed CloudFormation templates from the bundle zip to S3 bucket without extracting the zip, and
+   * deletes templates no longer in the bundle
+   * @param s3 {@link S3Operations} for interaction with S3 objects
+   * @param bundle location of zip file containing CloudFormation template bundle
+   * @param entryPrefix the directory of the bundle within the zip, including the trailing '/'
+   * @param bucketName the bucket name
+   * @return {@link SyncResult} describing the uploaded, deleted and unchanged objects
+   */
+  public static SyncResult syncZipBucket(
+      S3Operations s3,
+      Path bundle,
+      String entryPrefix,
+      String bucketName
+  ) {
+
+    LOGGER.info("Syncing Changes {} to S3 Bucket {}", bundle, bucketName);
+
+    SyncResult result = s3.syncZipToBucket(bundle, entryPrefix, bucketName);
+
+    LOGGER.info("Done Syncing Changes {} to S3 Bucket {}: {} uploaded ({} bytes), {} deleted, {} unchanged",
+        bundle, bucketName, result.getTransferredKeys().size(), result.getTransferredBytes(), result.getDeletedKeys().size(),
+        result.getUnchangedCount());
+
+    return result;
+  }
+
   /**
    * Empties an S3 bucket
    * @param s3 {@link S3Operations} for interaction with S3 objects
    * @param bucketName the bucket name
    */
   public static void emptyBucket(S3Operations s3, String bucketName) {
+    emptyBucketWithStatus(s3, bucketName);
+  }
+
+  /**
+   * Empties an S3 bucket, logging its progress and every object that could not be deleted
+   * @param s3 {@link S3Operations} for interaction with S3 objects
+   * @param bucketName the bucket name
+   * @return the final {@link EmptyBucketStatus}
+   */
+  public static EmptyBucketStatus emptyBucketWithStatus(S3Operations s3, String bucketName) {
 
     LOGGER.info("Emptying Bucket: {}", bucketName);
 
-    s3.deleteObjects(bucketName, s3.listObjects(bucketName));
+    EmptyBucketStatus status = s3.emptyBucket(bucketName, progress -> {
+      if (!progress.isComplete()) {
+        LOGGER.info("Emptying Bucket {}: {} deleted, {} remaining, {} failed, {}/s", bucketName, progress.getDeletedCount(),
+            progress.getRemainingCount(), progress.getFailures().size(), String.format("%.1f", progress.getDeletedPerSecond()));
+      }
+    });
 
-    try {
-      s3.deleteObjects(bucketName, s3.listObjects(bucketName));
-    } catch (Exception e) {
-      LOGGER.warn("Unable to delete bucket '{}'", bucketName, e);
+    for (DeleteResult.Failure failure : status.getFailures()) {
+      LOGGER.warn("Unable to delete '{}' version '{}' from bucket '{}': {} {}", failure.getKey(), failure.getVersionId(), bucketName,
+          failure.getCode(), failure.getMessage());
     }
 
-    LOGGER.info("Done Emptying Bucket: {}", bucketName);
+    LOGGER.info("Done Emptying Bucket: {}: {} deleted in {} ms", bucketName, status.getDeletedCount(), status.getElapsedMillis());
 
+    return status;
   }
 
   /**
-   * Unzips CloudFormation templates
+   * Unzips CloudFormation templates. Only entries that are missing or whose CRC changed since the last extraction are
+   * written, in parallel, and files of entries no longer in the zip are deleted. See {@link BundleExtractor}.
    * @param bundle location of zip file containing CloudFormation template bundle
    * @param targetDir location of target directory within the module containing CloudFormation templates
    */
@@ -196,65 +444,55 @@ public final class OperationUtils {
 
     LOGGER.info("Unzipping CloudFormation Bundle: {}", bundle.toString());
 
-    try (ZipFile zipFile = new ZipFile(bundle.toFile())) {
-      Enumeration<? extends ZipEntry> entries = zipFile.entries();
-      while (entries.hasMoreElements()) {
-        ZipEntry entry = entries.nextElement();
-        Path entryDestination = targetDir.resolve(entry.getName());
-        if (entry.isDirectory()) {
-          Files.createDirectories(entryDestination);
-        } else {
-          Path parent = entryDestination.getParent();
-          if (parent != null && !Files.exists(parent)) {
-            Files.createDirectories(parent);
-          }
-          try (InputStream in = zipFile.getInputStream(entry);
-              OutputStream out = Files.newOutputStream(entryDestination)) {
-            IOUtils.copy(in, out);
-          }
-        }
-      }
+    BundleExtractor.Result result;
+    try {
+      result = new BundleExtractor(Runtime.getRuntime().availableProcessors()).extract(bundle, targetDir);
     } catch (IOException e) {
       throw new RuntimeException("Unable to extract zip file", e);
     }
 
-    LOGGER.info("Done Unzipping CloudFormation Bundle: {}", bundle);
+    LOGGER.info("Done Unzipping CloudFormation Bundle: {}: {} extracted, {} unchanged, {} deleted", bundle, result.getExtracted(),
+        result.getUnchanged(), result.getDeleted());
   }
 
   /**
-   * Writes a properties file from application stack outputs
+   * Writes a properties file from application stack outputs. The stack is described once, callers that hold the
+   * {@link StackResult} of the operation use {@link #writeOutputsToFile(StackResult, Path)} instead.
    * @param cf {@link CloudFormationOperations} for interaction between cloud formation templates and stacks
    * @param target the maven target directory path
+   * @param applicationStackName the name logged for the application stack
    * @param stackContext the uniquely identifying {@link StackContext} for the stacks
    */
   public static void writeOutputsToFile(CloudFormationOperations cf, Path target, String applicationStackName, StackContext stackContext) {
+    LOGGER.info("Describing Stack Outputs: {}", applicationStackName);
+    writeOutputsToFile(StackResult.fromState(cf.describeStack(stackContext.getStackName())), target);
+  }
 
-    LOGGER.info("Writing Stack Outputs: {}", applicationStackName);
+  /**
+   * Writes the outputs of a stack operation to test-stack.properties in a single pass and caches them for
+   * {@link StackOutputs#lookup(Path, String)}
+   * @param result the {@link StackResult} of the stack operation
+   * @param target the maven target directory path
+   */
+  public static void writeOutputsToFile(StackResult result, Path target) {
 
-    try {
+    LOGGER.info("Writing Stack Outputs: {}", result.getStackName());
 
-      Path file = target.resolve("test-stack.properties");
+    Path file = target.resolve("test-stack.properties");
+    try {
       Files.deleteIfExists(file);
-
-      DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackContext.getStackName());
-
-      List<Output> outputs = cf.getStackOutputs(request);
-
-      if (outputs.size() > 0) {
-        for (Output output: outputs) {
-          String property = String.format("%s=%s", output.getOutputKey(), output.getOutputValue()) + "\n";
-          FileUtils.writeStringToFile(file.toFile(), property, StandardCharsets.UTF_8);
-        }
-        LOGGER.info("Done Writing Stack Outputs: {}", file);
-      } else {
-        LOGGER.info("Stack Has No Outputs, File Not Written: {}", applicationStackName);
-      }
-
     } catch (IOException e) {
       throw new RuntimeException("Unable to write stack outputs", e);
     }
 
+    StackOutputs.cache(target, result);
 
+    if (result.getOutputs().size() > 0) {
+      StackOutputs.write(result.getOutputs(), file);
+      LOGGER.info("Done Writing Stack Outputs: {}", file);
+    } else {
+      LOGGER.info("Stack Has No Outputs, File Not Written: {}", result.getStackName());
+    }
   }
 
   private OperationUtils() {
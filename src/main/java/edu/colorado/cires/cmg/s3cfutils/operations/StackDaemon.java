@@ -0,0 +1,616 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.colorado.cires.cmg.s3cfutils.framework.ObjectMapperCreator;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a {@link StackOperations} resident and runs the commands sent by {@link StackOperationsClient}, so a build that
+ * runs many commands pays for the JVM start, the AWS client setup and the credential and region lookup once. The
+ * daemon listens on a loopback port and writes the port and a random token to an endpoint file, readable only by the
+ * owner where the file system supports it.
+ *
+ * <p>On each connection the daemon first writes a greeting line, so a client never sends its token to another process
+ * that reuses the port of a stale endpoint file. The client answers with the token on one line and its request as one
+ * line of JSON, and the daemon replies with one line of JSON. Both lines are read with a size limit and the request is
+ * only parsed once the token has been checked. Connections are handled on their own threads, so a client that stalls
+ * does not hold up the others. Commands run one at a time.
+ *
+ * <p>The client sends a digest of its AWS environment: the {@code AWS_} environment variables, the {@code aws.} system
+ * properties and the contents of the shared credentials and config files. A command from a client whose digest differs
+ * from that of the daemon at startup is refused rather than run with the account and region of the daemon. Relative
+ * path arguments are resolved against the working directory of the client and the {@code CF_}, {@code CFD_} and
+ * {@code s3cfutils.} system properties of the client replace those of the daemon while its command runs. The daemon
+ * stops on {@value #STOP_COMMAND} or once it has been idle for the idle timeout.
+ */
+public class StackDaemon {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StackDaemon.class);
+
+  /**
+   * The {@link StackOperations} command that starts the daemon
+   */
+  public static final String COMMAND = "daemon";
+
+  /**
+   * The client command that stops the daemon
+   */
+  public static final String STOP_COMMAND = "stop-daemon";
+
+  /**
+   * Default idle time after which the daemon stops
+   */
+  public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+  /**
+   * System property overriding the location of the endpoint file
+   */
+  public static final String ENDPOINT_FILE_PROPERTY = "s3cfutils.daemon.endpointFile";
+
+  static final List<String> FORWARDED_PROPERTY_PREFIXES = Collections.unmodifiableList(Arrays.asList("CF_", "CFD_", "s3cfutils."));
+
+  private static final Map<String, int[]> PATH_ARGUMENTS;
+
+  static {
+    Map<String, int[]> pathArguments = new HashMap<>();
+    pathArguments.put("create-stack", new int[]{2, 3, 5, 6});
+    pathArguments.put("update-stack", new int[]{5, 7, 8, 9});
+    pathArguments.put("delete-stored-stack", new int[]{1});
+    pathArguments.put("deploy-plan", new int[]{1});
+    PATH_ARGUMENTS = Collections.unmodifiableMap(pathArguments);
+  }
+
+  /**
+   * First line written by the daemon on every connection
+   */
+  static final String GREETING = "s3cfutils-stack-daemon/1";
+
+  /**
+   * Maximum size in bytes of the token line, the request line and the response line
+   */
+  static final int MAX_LINE_BYTES = 256 * 1024;
+
+  private static final int MAX_TOKEN_BYTES = 128;
+
+  private static final int REQUEST_READ_TIMEOUT_MILLIS = 5000;
+
+  private static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
+  private final StackOperations operations;
+  private final Path endpointFile;
+  private final int port;
+  private final Duration idleTimeout;
+  private final Object commandLock = new Object();
+  private final AtomicInteger activeConnections = new AtomicInteger();
+  private volatile long lastActivityMillis;
+  private volatile boolean stopped;
+
+  private StackDaemon(Builder builder) {
+    operations = builder.operations;
+    endpointFile = builder.endpointFile;
+    port = builder.port;
+    idleTimeout = builder.idleTimeout;
+  }
+
+  /**
+   * @return the endpoint file named by the {@value #ENDPOINT_FILE_PROPERTY} system property, by default
+   * ~/.s3cfutils/daemon.json
+   */
+  public static Path defaultEndpointFile() {
+    String file = System.getProperty(ENDPOINT_FILE_PROPERTY);
+    return file == null || file.trim().isEmpty()
+        ? Paths.get(System.getProperty("user.home"), ".s3cfutils", "daemon.json")
+        : Paths.get(file.trim());
+  }
+
+  /**
+   * Serves requests until the daemon is stopped or has been idle for the idle timeout. Commands that are still running
+   * when the daemon stops are completed first.
+   */
+  public void serve() {
+    String token = newToken();
+    String awsIdentity = awsIdentity();
+    ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "stack-daemon-connection");
+      thread.setDaemon(true);
+      return thread;
+    });
+    lastActivityMillis = System.currentTimeMillis();
+    try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      writeEndpoint(server.getLocalPort(), token);
+      LOGGER.info("Stack Daemon Listening: {}:{} ({})", server.getInetAddress().getHostAddress(), server.getLocalPort(), endpointFile);
+      while (!stopped) {
+        long idleMillis = System.currentTimeMillis() - lastActivityMillis;
+        if (activeConnections.get() == 0 && idleMillis >= idleTimeout.toMillis()) {
+          LOGGER.info("Stack Daemon Idle For {}, Stopping", idleTimeout);
+          break;
+        }
+        server.setSoTimeout((int) Math.max(1000L, Math.min(Integer.MAX_VALUE, idleTimeout.toMillis() - idleMillis)));
+        Socket socket;
+        try {
+          socket = server.accept();
+        } catch (SocketTimeoutException e) {
+          continue;
+        } catch (IOException e) {
+          if (!stopped) {
+            LOGGER.warn("Unable to accept daemon connection", e);
+          }
+          continue;
+        }
+        activeConnections.incrementAndGet();
+        connections.execute(() -> {
+          try (Socket connection = socket) {
+            if (!handle(connection, token, awsIdentity)) {
+              stopped = true;
+              server.close();
+            }
+          } catch (IOException e) {
+            LOGGER.warn("Unable to serve daemon request", e);
+          } finally {
+            lastActivityMillis = System.currentTimeMillis();
+            activeConnections.decrementAndGet();
+          }
+        });
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to start stack daemon", e);
+    } finally {
+      deleteEndpoint(token);
+      connections.shutdown();
+      try {
+        while (!connections.awaitTermination(1L, TimeUnit.MINUTES)) {
+          LOGGER.info("Stack Daemon Waiting For Running Commands");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    LOGGER.info("Stack Daemon Stopped");
+  }
+
+  /**
+   * Runs the request of a connection and writes its response
+   * @return false if the daemon was asked to stop
+   */
+  private boolean handle(Socket socket, String token, String awsIdentity) throws IOException {
+    socket.setSoTimeout(REQUEST_READ_TIMEOUT_MILLIS);
+    InputStream in = new BufferedInputStream(socket.getInputStream());
+    OutputStream out = socket.getOutputStream();
+    writeLine(out, GREETING);
+
+    Response response = new Response();
+    String clientToken = readLine(in, MAX_TOKEN_BYTES);
+    if (clientToken == null) {
+      return true;
+    }
+    if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), clientToken.getBytes(StandardCharsets.UTF_8))) {
+      LOGGER.warn("Rejected daemon request with invalid token");
+      response.setError("Invalid daemon token");
+      writeLine(out, OBJECT_MAPPER.writeValueAsString(response));
+      return true;
+    }
+    String line = readLine(in, MAX_LINE_BYTES);
+    if (line == null) {
+      return true;
+    }
+    socket.setSoTimeout(0);
+
+    Request request = OBJECT_MAPPER.readValue(line, Request.class);
+    boolean running = true;
+    if (request.getArgs() == null || request.getArgs().isEmpty()) {
+      response.setError("No command");
+    } else if (STOP_COMMAND.equals(request.getArgs().get(0))) {
+      LOGGER.info("Stack Daemon Stop Requested");
+      response.setSucceeded(true);
+      running = false;
+    } else if (!awsIdentity.equals(request.getAwsIdentity())) {
+      LOGGER.warn("Refused Daemon Command With Different AWS Environment: {}", request.getArgs().get(0));
+      response.setIdentityMismatch(true);
+      response.setError("The AWS environment of the client differs from that of the daemon");
+    } else {
+      synchronized (commandLock) {
+        run(request, response);
+      }
+    }
+
+    writeLine(out, OBJECT_MAPPER.writeValueAsString(response));
+    return running;
+  }
+
+  private void run(Request request, Response response) {
+    String[] args = resolvePaths(request.getArgs(), request.getWorkingDir());
+    LOGGER.info("Daemon Running: {}", Arrays.toString(args));
+    long start = System.currentTimeMillis();
+    Properties saved = replaceProperties(request.getSystemProperties());
+    try {
+      operations.run(args);
+      response.setSucceeded(true);
+    } catch (Exception e) {
+      LOGGER.error("Daemon Command Failed: {}", args[0], e);
+      response.setError(e.toString());
+    } finally {
+      restoreProperties(saved, request.getSystemProperties());
+    }
+    response.setElapsedMillis(System.currentTimeMillis() - start);
+    LOGGER.info("Daemon Done Running: {} in {} ms", args[0], response.getElapsedMillis());
+  }
+
+  /**
+   * Resolves the relative path arguments of a command against the working directory of the client
+   */
+  static String[] resolvePaths(List<String> args, String workingDir) {
+    String[] resolved = args.toArray(new String[0]);
+    int[] pathArguments = PATH_ARGUMENTS.get(resolved[0].trim());
+    if (pathArguments != null && workingDir != null) {
+      for (int i : pathArguments) {
+        if (i < resolved.length && !resolved[i].trim().isEmpty()) {
+          resolved[i] = Paths.get(workingDir).resolve(resolved[i].trim()).toString();
+        }
+      }
+    }
+    return resolved;
+  }
+
+  static boolean isForwarded(String property) {
+    for (String prefix : FORWARDED_PROPERTY_PREFIXES) {
+      if (property.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes a digest of everything that selects the AWS account, credentials and region of a JVM: the {@code AWS_}
+   * environment variables, the {@code aws.} system properties and the contents of the shared credentials and config
+   * files
+   * @return hex encoded SHA-256 of the AWS environment
+   */
+  static String awsIdentity() {
+    Map<String, String> identity = new TreeMap<>();
+    System.getenv().forEach((name, value) -> {
+      if (name.startsWith("AWS_")) {
+        identity.put("env:" + name, value);
+      }
+    });
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith("aws.")) {
+        identity.put("property:" + name, System.getProperty(name));
+      }
+    }
+    Path awsDir = Paths.get(System.getProperty("user.home"), ".aws");
+    for (Path file : Arrays.asList(
+        awsFile("AWS_SHARED_CREDENTIALS_FILE", awsDir.resolve("credentials")),
+        awsFile("AWS_CONFIG_FILE", awsDir.resolve("config")))) {
+      identity.put("file:" + file, fileDigest(file));
+    }
+    MessageDigest digest = StackFingerprint.sha256();
+    for (Map.Entry<String, String> entry : identity.entrySet()) {
+      digest.update((entry.getKey() + '\0' + entry.getValue() + '\0').getBytes(StandardCharsets.UTF_8));
+    }
+    return StackFingerprint.toHex(digest.digest());
+  }
+
+  private static Path awsFile(String variable, Path defaultFile) {
+    String file = System.getenv(variable);
+    return file == null || file.trim().isEmpty() ? defaultFile : Paths.get(file.trim());
+  }
+
+  private static String fileDigest(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return "absent";
+    }
+    try {
+      return StackFingerprint.toHex(StackFingerprint.sha256().digest(Files.readAllBytes(file)));
+    } catch (IOException e) {
+      return "unreadable";
+    }
+  }
+
+  /**
+   * Reads a line of UTF-8 text terminated by '\n'
+   * @param in the stream to read
+   * @param maxBytes the maximum length of the line
+   * @return the line without its terminator, or null at the end of the stream
+   * @throws IOException if the line is longer than maxBytes
+   */
+  static String readLine(InputStream in, int maxBytes) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1 && b != '\n') {
+      if (line.size() == maxBytes) {
+        throw new IOException("Line exceeds " + maxBytes + " bytes");
+      }
+      line.write(b);
+    }
+    if (b == -1 && line.size() == 0) {
+      return null;
+    }
+    return new String(line.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  static void writeLine(OutputStream out, String line) throws IOException {
+    out.write(line.getBytes(StandardCharsets.UTF_8));
+    out.write('\n');
+    out.flush();
+  }
+
+  /**
+   * Replaces the forwarded system properties of the daemon with those of the client
+   * @return the daemon properties that were replaced
+   */
+  private static Properties replaceProperties(Map<String, String> clientProperties) {
+    Properties saved = new Properties();
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (isForwarded(name)) {
+        saved.setProperty(name, System.getProperty(name));
+        System.clearProperty(name);
+      }
+    }
+    if (clientProperties != null) {
+      clientProperties.forEach(System::setProperty);
+    }
+    return saved;
+  }
+
+  private static void restoreProperties(Properties saved, Map<String, String> clientProperties) {
+    if (clientProperties != null) {
+      clientProperties.keySet().forEach(System::clearProperty);
+    }
+    for (String name : saved.stringPropertyNames()) {
+      System.setProperty(name, saved.getProperty(name));
+    }
+  }
+
+  private static String newToken() {
+    byte[] bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    return StackFingerprint.toHex(bytes);
+  }
+
+  private void writeEndpoint(int localPort, String token) throws IOException {
+    Endpoint endpoint = new Endpoint();
+    endpoint.setPort(localPort);
+    endpoint.setToken(token);
+    Path parent = endpointFile.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path tmp = parent.resolve(endpointFile.getFileName() + ".tmp");
+    Files.deleteIfExists(tmp);
+    Files.createFile(tmp);
+    try {
+      Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+    } catch (UnsupportedOperationException e) {
+      LOGGER.debug("Endpoint file permissions not supported: {}", tmp);
+    }
+    OBJECT_MAPPER.writeValue(tmp.toFile(), endpoint);
+    Files.move(tmp, endpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Deletes the endpoint file unless it was replaced by another daemon
+   */
+  private void deleteEndpoint(String token) {
+    try {
+      Endpoint endpoint = OBJECT_MAPPER.readValue(endpointFile.toFile(), Endpoint.class);
+      if (token.equals(endpoint.getToken())) {
+        Files.deleteIfExists(endpointFile);
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Unable to remove endpoint file: {}", endpointFile, e);
+    }
+  }
+
+  public static class Builder {
+
+    private StackOperations operations;
+    private Path endpointFile = defaultEndpointFile();
+    private int port;
+    private Duration idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    public static Builder configure() {
+      return new Builder();
+    }
+
+    private Builder() {
+
+    }
+
+    /**
+     * @param operations the {@link StackOperations} running the commands
+     * @return this builder
+     */
+    public Builder withOperations(StackOperations operations) {
+      this.operations = operations;
+      return this;
+    }
+
+    /**
+     * @param endpointFile the file the port and token are written to
+     * @return this builder
+     */
+    public Builder withEndpointFile(Path endpointFile) {
+      this.endpointFile = endpointFile;
+      return this;
+    }
+
+    /**
+     * @param port the loopback port to listen on, 0 for any free port
+     * @return this builder
+     */
+    public Builder withPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * @param idleTimeout the time without requests after which the daemon stops
+     * @return this builder
+     */
+    public Builder withIdleTimeout(Duration idleTimeout) {
+      this.idleTimeout = idleTimeout;
+      return this;
+    }
+
+    public StackDaemon build() {
+      if (operations == null) {
+        throw new IllegalStateException("operations is required");
+      }
+      if (port < 0 || port > 65535) {
+        throw new IllegalArgumentException("port must be between 0 and 65535");
+      }
+      if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+        throw new IllegalArgumentException("idleTimeout must be positive");
+      }
+      return new StackDaemon(this);
+    }
+  }
+
+  /**
+   * Contents of the endpoint file
+   */
+  public static class Endpoint {
+
+    private int port;
+    private String token;
+
+    public int getPort() {
+      return port;
+    }
+
+    public void setPort(int port) {
+      this.port = port;
+    }
+
+    public String getToken() {
+      return token;
+    }
+
+    public void setToken(String token) {
+      this.token = token;
+    }
+  }
+
+  /**
+   * A command sent by a client
+   */
+  public static class Request {
+
+    private String awsIdentity;
+    private String workingDir;
+    private List<String> args = new ArrayList<>();
+    private Map<String, String> systemProperties = new LinkedHashMap<>();
+
+    /**
+     * @return the digest of the AWS environment of the client
+     */
+    public String getAwsIdentity() {
+      return awsIdentity;
+    }
+
+    public void setAwsIdentity(String awsIdentity) {
+      this.awsIdentity = awsIdentity;
+    }
+
+    public String getWorkingDir() {
+      return workingDir;
+    }
+
+    public void setWorkingDir(String workingDir) {
+      this.workingDir = workingDir;
+    }
+
+    public List<String> getArgs() {
+      return args;
+    }
+
+    public void setArgs(List<String> args) {
+      this.args = args;
+    }
+
+    public Map<String, String> getSystemProperties() {
+      return systemProperties;
+    }
+
+    public void setSystemProperties(Map<String, String> systemProperties) {
+      this.systemProperties = systemProperties;
+    }
+  }
+
+  /**
+   * The outcome of a command
+   */
+  public static class Response {
+
+    private boolean succeeded;
+    private boolean identityMismatch;
+    private String error;
+    private long elapsedMillis;
+
+    public boolean isSucceeded() {
+      return succeeded;
+    }
+
+    public void setSucceeded(boolean succeeded) {
+      this.succeeded = succeeded;
+    }
+
+    /**
+     * @return true if the command was refused because the AWS environment of the client differs from the daemon
+     */
+    public boolean isIdentityMismatch() {
+      return identityMismatch;
+    }
+
+    public void setIdentityMismatch(boolean identityMismatch) {
+      this.identityMismatch = identityMismatch;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public void setError(String error) {
+      this.error = error;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+      this.elapsedMillis = elapsedMillis;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import edu.colorado.cires.cmg.s3cfutils.framework.ITUtils;
+import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Content hash of everything an application stack is deployed from: every file of the template bundle, the
+ * application stack template name and the resolved stack parameters. The fingerprint is stored as a stack tag so an
+ * unchanged deployment can be detected with the describe request that is already made before deploying.
+ */
+public final class StackFingerprint {
+
+  /**
+   * Key of the stack tag holding the fingerprint of the last successful deployment
+   */
+  public static final String TAG_KEY = "s3cfutils:fingerprint";
+
+  /**
+   * Computes the fingerprint of a deployment from an extracted bundle
+   * @param bundleDir location of the extracted CloudFormation template bundle
+   * @param applicationStackFileName the application stack template file name
+   * @param parameters List of {@link ParameterKeyValue} for application stack template
+   * @return hex encoded SHA-256 fingerprint
+   */
+  public static String compute(Path bundleDir, String applicationStackFileName, List<ParameterKeyValue> parameters) {
+    Map<String, Content> files = new TreeMap<>();
+    for (Path file : ITUtils.listFiles(bundleDir)) {
+      files.put(bundleDir.relativize(file).toString().replace('\\', '/'), () -> Files.newInputStream(file));
+    }
+    return compute(files, applicationStackFileName, parameters);
+  }
+
+  /**
+   * Computes the fingerprint of a deployment from the bundle zip without extracting it. The fingerprint is the same as
+   * the fingerprint of the extracted bundle.
+   * @param bundle location of zip file containing CloudFormation template bundle
+   * @param entryPrefix the directory of the bundle within the zip, including the trailing '/'
+   * @param applicationStackFileName the application stack template file name
+   * @param parameters List of {@link ParameterKeyValue} for application stack template
+   * @return hex encoded SHA-256 fingerprint
+   */
+  public static String computeFromZip(Path bundle, String entryPrefix, String applicationStackFileName, List<ParameterKeyValue> parameters) {
+    try (ZipFile zipFile = new ZipFile(bundle.toFile())) {
+      Map<String, Content> entries = new TreeMap<>();
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry entry = zipEntries.nextElement();
+        if (!entry.isDirectory() && entry.getName().startsWith(entryPrefix) && entry.getName().length() > entryPrefix.length()) {
+          entries.put(entry.getName().substring(entryPrefix.length()), () -> zipFile.getInputStream(entry));
+        }
+      }
+      return compute(entries, applicationStackFileName, parameters);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read bundle " + bundle, e);
+    }
+  }
+
+  private static String compute(Map<String, Content> files, String applicationStackFileName, List<ParameterKeyValue> parameters) {
+    MessageDigest digest = sha256();
+
+    update(digest, applicationStackFileName);
+
+    Map<String, String> sortedParameters = new TreeMap<>();
+    for (ParameterKeyValue parameter : parameters) {
+      sortedParameters.put(parameter.getParameterKey(), parameter.getParameterValue());
+    }
+    for (Map.Entry<String, String> parameter : sortedParameters.entrySet()) {
+      update(digest, parameter.getKey());
+      update(digest, parameter.getValue());
+    }
+
+    byte[] buffer = new byte[8192];
+    for (Map.Entry<String, Content> file : files.entrySet()) {
+      update(digest, file.getKey());
+      long length = 0L;
+      try (InputStream in = file.getValue().open()) {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+          length += read;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to read bundle file " + file.getKey(), e);
+      }
+      update(digest, String.valueOf(length));
+    }
+
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Hashes a value with its length so adjacent values can not run into each other
+   */
+  private static void update(MessageDigest digest, String value) {
+    byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    digest.update(String.valueOf(bytes.length).getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) ':');
+    digest.update(bytes);
+  }
+
+  /**
+   * @return a new SHA-256 {@link MessageDigest}
+   */
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+  /**
+   * @param bytes the bytes to encode
+   * @return lower case hex encoding of the bytes
+   */
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+
+  private interface Content {
+
+    InputStream open() throws IOException;
+  }
+
+  private StackFingerprint() {
+
+  }
+}
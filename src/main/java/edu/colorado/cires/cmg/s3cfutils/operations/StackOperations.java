@@ -1,35 +1,95 @@
 package edu.colorado.cires.cmg.s3cfutils.operations;
 
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
 import com.amazonaws.services.cloudformation.AmazonCloudFormationClientBuilder;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperations;
+import edu.colorado.cires.cmg.s3cfutils.framework.ApiCallMetricsHandler;
+import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperationsAsyncImpl;
 import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperationsImpl;
 import edu.colorado.cires.cmg.s3cfutils.framework.ObjectMapperCreator;
-import edu.colorado.cires.cmg.s3cfutils.framework.S3Operations;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetrics;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetricsReport;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationPhase;
 import edu.colorado.cires.cmg.s3cfutils.framework.S3OperationsImpl;
 import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * CloudFormation stack operations from command line parameters
+ * CloudFormation stack operations from command line parameters. The AWS clients are built once per instance, so a
+ * {@link StackDaemon} runs any number of commands with the same clients, connection pools and {@link S3OperationsImpl}.
  */
-public class StackOperations {
+public class StackOperations implements AutoCloseable {
 
 
   private static final Logger LOGGER = LoggerFactory.getLogger(StackOperations.class);
 
-  private static final CloudFormationOperations cf = new CloudFormationOperationsImpl(AmazonCloudFormationClientBuilder.defaultClient());
-  private static final S3Operations s3 = new S3OperationsImpl(AmazonS3ClientBuilder.defaultClient());
-  private static final ObjectMapper objectMapper = ObjectMapperCreator.create();
+  private final ObjectMapper objectMapper = ObjectMapperCreator.create();
+  private final AmazonCloudFormation cloudFormation;
+  private final CloudFormationOperationsImpl cf;
+  private final S3OperationsImpl s3;
+  private volatile OperationMetricsReport metrics = new OperationMetricsReport(objectMapper);
+
+  public StackOperations() {
+    // the clients report to the metrics of the command that is running
+    OperationMetrics currentMetrics = new OperationMetrics() {
+      @Override
+      public void phaseCompleted(OperationPhase phase, String target, long elapsedMillis, boolean succeeded, Map<String, Object> attributes) {
+        metrics.phaseCompleted(phase, target, elapsedMillis, succeeded, attributes);
+      }
+
+      @Override
+      public void apiCallCompleted(String service, String operation, int attempts, long elapsedMillis, boolean succeeded) {
+        metrics.apiCallCompleted(service, operation, attempts, elapsedMillis, succeeded);
+      }
+    };
+    cloudFormation = AmazonCloudFormationClientBuilder.standard()
+        .withRequestHandlers(new ApiCallMetricsHandler(currentMetrics))
+        .build();
+    cf = new CloudFormationOperationsImpl(cloudFormation);
+    s3 = new S3OperationsImpl(AmazonS3ClientBuilder.standard()
+        .withRequestHandlers(new ApiCallMetricsHandler(currentMetrics))
+        .build());
+  }
 
   public static void main(String[] args) {
 
     LOGGER.info("{}", Arrays.toString(args));
 
+    if (StackDaemon.COMMAND.equals(args[0])) {
+      int port = args.length > 1 ? Integer.parseInt(args[1].trim()) : 0;
+      Duration idleTimeout = args.length > 2 ? Duration.parse(args[2].trim()) : StackDaemon.DEFAULT_IDLE_TIMEOUT;
+      try (StackOperations operations = new StackOperations()) {
+        StackDaemon.Builder.configure()
+            .withOperations(operations)
+            .withPort(port)
+            .withIdleTimeout(idleTimeout)
+            .build()
+            .serve();
+      }
+      return;
+    }
+
+    try (StackOperations operations = new StackOperations()) {
+      operations.run(args);
+    }
+
+  }
+
+  /**
+   * Runs a single command with its own metrics report. Commands run one at a time.
+   * @param args the command followed by its arguments
+   */
+  synchronized void run(String[] args) {
+    metrics = new OperationMetricsReport(objectMapper);
     switch (args[0]) {
       case "create-stack": {
         String version = args[1].trim();
@@ -40,8 +100,12 @@ public class StackOperations {
         String stackParamsPath = args[6].trim();
         String applicationStackFileName = args[7].trim();
         boolean writeStackOutputs = Boolean.parseBoolean(args[8]);
-        new CreateStack(cf, s3, objectMapper).run(version, cfBaseDir, baseDir,
-                cfPrefix, deploymentParamsPath, stackParamsPath, applicationStackFileName, writeStackOutputs);
+        try {
+          new CreateStack(cf, s3, objectMapper, metrics).run(version, cfBaseDir, baseDir,
+                  cfPrefix, deploymentParamsPath, stackParamsPath, applicationStackFileName, writeStackOutputs);
+        } finally {
+          writeMetrics(baseDir, args[0]);
+        }
       }
       break;
       case "delete-stack":
@@ -53,10 +117,14 @@ public class StackOperations {
             .withDeploymentStackName(deploymentStackName)
             .withDeploymentBucketName(deploymentBucketName)
             .build();
-        new DeleteStack(cf, s3).run(stackContext, false);
+        new DeleteStack(cf, s3, metrics, concurrentTeardown()).run(stackContext, false);
         break;
       case "delete-stored-stack":
-        new DeleteStack(cf, s3).run(args[1].trim(), false);
+        try {
+          new DeleteStack(cf, s3, metrics, concurrentTeardown()).run(args[1].trim(), false);
+        } finally {
+          writeMetrics(args[1].trim(), args[0]);
+        }
         break;
       case "update-stack":
         String version = args[1].trim();
@@ -69,12 +137,65 @@ public class StackOperations {
         String deploymentParamsPath = args[8].trim();
         String stackParamsPath = args[9].trim();
         boolean writeStackOutputs = Boolean.parseBoolean(args[10]);
-        new UpdateStack(cf, s3, objectMapper).run(version, applicationStackName, applicationStackFileName, deploymentStackName, cfBaseDir, cfPrefix, baseDir, deploymentParamsPath, stackParamsPath, writeStackOutputs);
+        try {
+          new UpdateStack(cf, s3, objectMapper, metrics).run(version, applicationStackName, applicationStackFileName, deploymentStackName, cfBaseDir, cfPrefix, baseDir, deploymentParamsPath, stackParamsPath, writeStackOutputs);
+        } finally {
+          writeMetrics(baseDir, args[0]);
+        }
+        break;
+      case "deploy-plan":
+        StackPlan plan = StackPlan.read(Paths.get(args[1].trim()), objectMapper);
+        try (CloudFormationOperationsAsyncImpl cfAsync = new CloudFormationOperationsAsyncImpl(cloudFormation)) {
+          new StackPlanExecutor(cf, cfAsync).execute(plan);
+        }
         break;
+      case "gc-test-stacks": {
+        Duration minAge = Duration.parse(args[1].trim());
+        Set<String> statuses = new LinkedHashSet<>();
+        if (args.length > 2 && !args[2].trim().isEmpty() && !args[2].trim().equalsIgnoreCase("any")) {
+          for (String status : args[2].split(",")) {
+            statuses.add(status.trim());
+          }
+        }
+        int parallelism = args.length > 3 ? Integer.parseInt(args[3].trim()) : 8;
+        boolean dryRun = args.length > 4 && Boolean.parseBoolean(args[4].trim());
+        GcTestStacks.Summary summary = new GcTestStacks(cf, s3, metrics).run(minAge, statuses, parallelism, dryRun);
+        if (!summary.getFailed().isEmpty()) {
+          throw new IllegalStateException("Unable to delete test stacks: " + summary.getFailed());
+        }
+      }
+      break;
       default:
         throw new RuntimeException("Invalid command '" + args[0] + "'");
     }
 
   }
 
+  /**
+   * @return true unless the s3cfutils.concurrentTeardown system property is set to false
+   */
+  private boolean concurrentTeardown() {
+    return Boolean.parseBoolean(System.getProperty("s3cfutils.concurrentTeardown", "true"));
+  }
+
+  /**
+   * Writes the timing report of a command next to test-id.txt. A report that cannot be written does not fail the
+   * command.
+   * @param baseDir the project base directory
+   * @param command the command the report covers
+   */
+  private void writeMetrics(String baseDir, String command) {
+    try {
+      metrics.write(Paths.get(baseDir).resolve("target"), command);
+    } catch (Exception e) {
+      LOGGER.warn("Unable to write metrics report", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    s3.close();
+    cloudFormation.shutdown();
+  }
+
 }
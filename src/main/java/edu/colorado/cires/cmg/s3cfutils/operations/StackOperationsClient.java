@@ -0,0 +1,153 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.colorado.cires.cmg.s3cfutils.framework.ObjectMapperCreator;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends a {@link StackOperations} command to a running {@link StackDaemon} and waits for it to complete. The arguments
+ * are the same as those of {@link StackOperations}. Without a reachable daemon the command runs in this JVM instead,
+ * so a build works with or without a daemon. The token is only sent once the daemon has answered with its greeting, and
+ * a daemon that refuses the command because it was started with a different AWS environment also leaves the command to
+ * this JVM. {@value StackDaemon#STOP_COMMAND} stops the daemon.
+ */
+public class StackOperationsClient {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StackOperationsClient.class);
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+  private static final int GREETING_TIMEOUT_MILLIS = 5000;
+
+  private static final ObjectMapper OBJECT_MAPPER = ObjectMapperCreator.create();
+
+  public static void main(String[] args) {
+
+    LOGGER.info("{}", Arrays.toString(args));
+
+    StackDaemon.Endpoint endpoint = readEndpoint(StackDaemon.defaultEndpointFile());
+    Socket socket = endpoint == null ? null : connect(endpoint);
+    if (socket == null) {
+      if (StackDaemon.STOP_COMMAND.equals(args[0])) {
+        LOGGER.info("No Stack Daemon Running");
+        return;
+      }
+      LOGGER.info("No Stack Daemon Running, Running In Process: {}", args[0]);
+      StackOperations.main(args);
+      return;
+    }
+
+    StackDaemon.Response response;
+    try (Socket connection = socket) {
+      InputStream in = new BufferedInputStream(connection.getInputStream());
+      OutputStream out = connection.getOutputStream();
+      if (!greeted(connection, in)) {
+        LOGGER.warn("Port {} Is Not A Stack Daemon, Running In Process: {}", endpoint.getPort(), args[0]);
+        response = null;
+      } else {
+        // the command may run for as long as a deploy takes
+        connection.setSoTimeout(0);
+        StackDaemon.writeLine(out, endpoint.getToken());
+        StackDaemon.writeLine(out, OBJECT_MAPPER.writeValueAsString(request(args)));
+        String line = StackDaemon.readLine(in, StackDaemon.MAX_LINE_BYTES);
+        if (line == null) {
+          throw new IllegalStateException("Stack daemon closed the connection without a response");
+        }
+        response = OBJECT_MAPPER.readValue(line, StackDaemon.Response.class);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to run command with stack daemon: " + args[0], e);
+    }
+
+    if (response == null) {
+      if (!StackDaemon.STOP_COMMAND.equals(args[0])) {
+        StackOperations.main(args);
+      }
+      return;
+    }
+    if (response.isIdentityMismatch()) {
+      LOGGER.warn("Stack Daemon Uses A Different AWS Environment, Running In Process: {}", args[0]);
+      StackOperations.main(args);
+      return;
+    }
+    if (!response.isSucceeded()) {
+      throw new IllegalStateException("Stack daemon command failed: " + args[0] + ": " + response.getError());
+    }
+    LOGGER.info("Stack Daemon Completed: {} in {} ms", args[0], response.getElapsedMillis());
+  }
+
+  /**
+   * @return true if the process listening on the port answered with the greeting of the daemon in time
+   */
+  private static boolean greeted(Socket socket, InputStream in) throws IOException {
+    socket.setSoTimeout(GREETING_TIMEOUT_MILLIS);
+    try {
+      return StackDaemon.GREETING.equals(StackDaemon.readLine(in, StackDaemon.GREETING.length() + 2));
+    } catch (SocketTimeoutException e) {
+      return false;
+    } catch (IOException e) {
+      LOGGER.debug("Unable to read stack daemon greeting", e);
+      return false;
+    }
+  }
+
+  private static StackDaemon.Request request(String[] args) {
+    StackDaemon.Request request = new StackDaemon.Request();
+    request.setAwsIdentity(StackDaemon.awsIdentity());
+    request.setWorkingDir(Paths.get("").toAbsolutePath().toString());
+    request.setArgs(Arrays.asList(args));
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (StackDaemon.isForwarded(name)) {
+        request.getSystemProperties().put(name, System.getProperty(name));
+      }
+    }
+    return request;
+  }
+
+  /**
+   * @return the endpoint of the daemon, or null if no daemon has written one
+   */
+  private static StackDaemon.Endpoint readEndpoint(Path endpointFile) {
+    if (!Files.isRegularFile(endpointFile)) {
+      return null;
+    }
+    try {
+      return OBJECT_MAPPER.readValue(endpointFile.toFile(), StackDaemon.Endpoint.class);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to read stack daemon endpoint '{}'", endpointFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return a connection to the daemon, or null if it is not listening
+   */
+  private static Socket connect(StackDaemon.Endpoint endpoint) {
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), endpoint.getPort()), CONNECT_TIMEOUT_MILLIS);
+      return socket;
+    } catch (IOException e) {
+      LOGGER.debug("Stack daemon not reachable on port {}", endpoint.getPort(), e);
+      try {
+        socket.close();
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      return null;
+    }
+  }
+}
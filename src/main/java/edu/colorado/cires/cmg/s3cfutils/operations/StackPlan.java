@@ -0,0 +1,179 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Declarative description of several stacks, their templates, parameters and dependencies
+ *
+ * <pre>
+ * {
+ *   "maxConcurrency": 4,
+ *   "stacks": [
+ *     { "stackName": "network", "templateUrl": "https://s3.amazonaws.com/bucket/network.yaml", "parameters": [] },
+ *     {
+ *       "stackName": "service",
+ *       "templateUrl": "https://s3.amazonaws.com/bucket/service.yaml",
+ *       "parameters": [{ "ParameterKey": "Env", "ParameterValue": "test" }],
+ *       "dependsOn": ["network"],
+ *       "outputParameters": [{ "parameterKey": "VpcId", "stackName": "network", "outputKey": "VpcId" }]
+ *     }
+ *   ]
+ * }
+ * </pre>
+ */
+public class StackPlan {
+
+  private int maxConcurrency = 4;
+  private List<PlannedStack> stacks = new ArrayList<>();
+
+  /**
+   * Reads a plan from a JSON file
+   * @param path the plan file path
+   * @param objectMapper the {@link ObjectMapper} used to parse the plan
+   * @return the {@link StackPlan}
+   */
+  public static StackPlan read(Path path, ObjectMapper objectMapper) {
+    try {
+      return objectMapper.readValue(path.toFile(), StackPlan.class);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read stack plan", e);
+    }
+  }
+
+  /**
+   * @return the maximum number of stacks deployed at the same time
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public void setMaxConcurrency(int maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  public List<PlannedStack> getStacks() {
+    return stacks;
+  }
+
+  public void setStacks(List<PlannedStack> stacks) {
+    this.stacks = stacks;
+  }
+
+  /**
+   * A stack within a {@link StackPlan}
+   */
+  public static class PlannedStack {
+
+    private String stackName;
+    private String templateUrl;
+    private List<ParameterKeyValue> parameters = new ArrayList<>();
+    private List<String> dependsOn = new ArrayList<>();
+    private List<OutputParameter> outputParameters = new ArrayList<>();
+
+    public String getStackName() {
+      return stackName;
+    }
+
+    public void setStackName(String stackName) {
+      this.stackName = stackName;
+    }
+
+    public String getTemplateUrl() {
+      return templateUrl;
+    }
+
+    public void setTemplateUrl(String templateUrl) {
+      this.templateUrl = templateUrl;
+    }
+
+    public List<ParameterKeyValue> getParameters() {
+      return parameters;
+    }
+
+    public void setParameters(List<ParameterKeyValue> parameters) {
+      this.parameters = parameters;
+    }
+
+    /**
+     * @return names of stacks that must be deployed before this stack
+     */
+    public List<String> getDependsOn() {
+      return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+      this.dependsOn = dependsOn;
+    }
+
+    /**
+     * @return parameters whose values are outputs of upstream stacks
+     */
+    public List<OutputParameter> getOutputParameters() {
+      return outputParameters;
+    }
+
+    public void setOutputParameters(List<OutputParameter> outputParameters) {
+      this.outputParameters = outputParameters;
+    }
+
+    /**
+     * @return the declared dependencies and every stack an output parameter is read from
+     */
+    public Set<String> dependencies() {
+      Set<String> dependencies = new LinkedHashSet<>(dependsOn);
+      for (OutputParameter outputParameter : outputParameters) {
+        dependencies.add(outputParameter.getStackName());
+      }
+      return dependencies;
+    }
+
+    @Override
+    public String toString() {
+      return "PlannedStack{stackName='" + stackName + "', templateUrl='" + templateUrl + "', dependsOn=" + dependencies() + "}";
+    }
+  }
+
+  /**
+   * A stack parameter set from an output of an upstream stack
+   */
+  public static class OutputParameter {
+
+    private String parameterKey;
+    private String stackName;
+    private String outputKey;
+
+    public String getParameterKey() {
+      return parameterKey;
+    }
+
+    public void setParameterKey(String parameterKey) {
+      this.parameterKey = parameterKey;
+    }
+
+    /**
+     * @return the name of the upstream stack
+     */
+    public String getStackName() {
+      return stackName;
+    }
+
+    public void setStackName(String stackName) {
+      this.stackName = stackName;
+    }
+
+    public String getOutputKey() {
+      return outputKey;
+    }
+
+    public void setOutputKey(String outputKey) {
+      this.outputKey = outputKey;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package edu.colorado.cires.cmg.s3cfutils.operations;
+
+import com.amazonaws.services.cloudformation.model.Output;
+import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperations;
+import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperationsAsync;
+import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackResult;
+import edu.colorado.cires.cmg.s3cfutils.operations.StackPlan.OutputParameter;
+import edu.colorado.cires.cmg.s3cfutils.operations.StackPlan.PlannedStack;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deploys the stacks of a {@link StackPlan} in dependency order. Stacks whose dependencies are complete are deployed
+ * concurrently up to the plan's concurrency limit, outputs of upstream stacks are passed to downstream parameters.
+ */
+public class StackPlanExecutor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StackPlanExecutor.class);
+
+  private final CloudFormationOperations cf;
+  private final CloudFormationOperationsAsync cfAsync;
+
+  public StackPlanExecutor(CloudFormationOperations cf, CloudFormationOperationsAsync cfAsync) {
+    this.cf = cf;
+    this.cfAsync = cfAsync;
+  }
+
+  /**
+   * Creates or updates every stack of a plan. After the first failure no further stacks are started, stacks already in
+   * progress are allowed to finish.
+   * @param plan the {@link StackPlan}
+   * @return {@link StackResult} by stack name
+   */
+  public Map<String, StackResult> execute(StackPlan plan) {
+    List<PlannedStack> order = sort(plan);
+    LOGGER.info("Deploying Stack Plan: {} stacks, max concurrency {}", order.size(), plan.getMaxConcurrency());
+    Map<String, StackResult> results = new Execution(order, Math.max(1, plan.getMaxConcurrency())).run();
+    LOGGER.info("Done Deploying Stack Plan: {} stacks", results.size());
+    return results;
+  }
+
+  /**
+   * Orders stacks so every stack follows its dependencies
+   * @param plan the {@link StackPlan}
+   * @return stacks in topological order
+   * @throws IllegalArgumentException if a dependency is unknown or the dependencies contain a cycle
+   */
+  static List<PlannedStack> sort(StackPlan plan) {
+    Map<String, PlannedStack> byName = new LinkedHashMap<>();
+    for (PlannedStack stack : plan.getStacks()) {
+      if (byName.put(stack.getStackName(), stack) != null) {
+        throw new IllegalArgumentException("Duplicate stack in plan: " + stack.getStackName());
+      }
+    }
+
+    Map<String, Integer> inDegree = new HashMap<>();
+    Map<String, List<String>> dependents = new HashMap<>();
+    for (PlannedStack stack : byName.values()) {
+      inDegree.put(stack.getStackName(), stack.dependencies().size());
+      for (String dependency : stack.dependencies()) {
+        if (!byName.containsKey(dependency)) {
+          throw new IllegalArgumentException("Stack '" + stack.getStackName() + "' depends on unknown stack '" + dependency + "'");
+        }
+        dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(stack.getStackName());
+      }
+    }
+
+    Deque<String> ready = new ArrayDeque<>();
+    for (PlannedStack stack : byName.values()) {
+      if (inDegree.get(stack.getStackName()) == 0) {
+        ready.add(stack.getStackName());
+      }
+    }
+    List<PlannedStack> order = new ArrayList<>(byName.size());
+    while (!ready.isEmpty()) {
+      String name = ready.poll();
+      order.add(byName.get(name));
+      for (String dependent : dependents.getOrDefault(name, Collections.emptyList())) {
+        if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+          ready.add(dependent);
+        }
+      }
+    }
+    if (order.size() != byName.size()) {
+      throw new IllegalArgumentException("Stack plan dependencies contain a cycle");
+    }
+    return order;
+  }
+
+  /**
+   * State of a single plan execution
+   */
+  private class Execution {
+
+    private final Map<String, PlannedStack> pending = new LinkedHashMap<>();
+    private final Map<String, StackResult> completed = new HashMap<>();
+    private final Map<String, Throwable> failed = new LinkedHashMap<>();
+    private final int maxConcurrency;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private int running;
+
+    private Execution(List<PlannedStack> order, int maxConcurrency) {
+      for (PlannedStack stack : order) {
+        pending.put(stack.getStackName(), stack);
+      }
+      this.maxConcurrency = maxConcurrency;
+    }
+
+    private Map<String, StackResult> run() {
+      launchReady();
+      done.join();
+      synchronized (this) {
+        if (!failed.isEmpty()) {
+          if (!pending.isEmpty()) {
+            LOGGER.warn("Stacks Not Deployed Due To Failures: {}", pending.keySet());
+          }
+          Map.Entry<String, Throwable> first = failed.entrySet().iterator().next();
+          throw new IllegalStateException("Stack plan failed: " + failed.keySet(), first.getValue());
+        }
+        return new LinkedHashMap<>(completed);
+      }
+    }
+
+    /**
+     * Starts every stack whose dependencies are complete while below the concurrency limit
+     */
+    private void launchReady() {
+      List<PlannedStack> launch = new ArrayList<>();
+      synchronized (this) {
+        if (failed.isEmpty()) {
+          Iterator<PlannedStack> iterator = pending.values().iterator();
+          while (running + launch.size() < maxConcurrency && iterator.hasNext()) {
+            PlannedStack stack = iterator.next();
+            if (completed.keySet().containsAll(stack.dependencies())) {
+              iterator.remove();
+              launch.add(stack);
+            }
+          }
+        }
+        running += launch.size();
+        if (running == 0) {
+          done.complete(null);
+        }
+      }
+      for (PlannedStack stack : launch) {
+        deploy(stack).whenComplete((result, error) -> onComplete(stack, result, error));
+      }
+    }
+
+    private void onComplete(PlannedStack stack, StackResult result, Throwable error) {
+      synchronized (this) {
+        running--;
+        if (error == null) {
+          LOGGER.info("Done Deploying Stack: {} {}", stack.getStackName(), result.getStackStatus());
+          completed.put(stack.getStackName(), result);
+        } else {
+          Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+          LOGGER.error("Failed Deploying Stack: {}", stack.getStackName(), cause);
+          failed.put(stack.getStackName(), cause);
+        }
+      }
+      launchReady();
+    }
+
+    private CompletableFuture<StackResult> deploy(PlannedStack stack) {
+      List<ParameterKeyValue> parameters;
+      try {
+        synchronized (this) {
+          parameters = resolveParameters(stack);
+        }
+      } catch (RuntimeException e) {
+        CompletableFuture<StackResult> failure = new CompletableFuture<>();
+        failure.completeExceptionally(e);
+        return failure;
+      }
+      String stackName = stack.getStackName();
+      return CompletableFuture.supplyAsync(() -> cf.describeStack(stackName))
+          .thenCompose(state -> {
+            if (state.exists()) {
+              LOGGER.info("Updating Stack: {}", stackName);
+              return cfAsync.updateStackWithUrlAsync(stackName, stack.getTemplateUrl(), parameters);
+            }
+            LOGGER.info("Creating Stack: {}", stackName);
+            return cfAsync.createStackWithUrlAsync(stackName, stack.getTemplateUrl(), parameters);
+          });
+    }
+
+    /**
+     * Combines the declared parameters with outputs of completed upstream stacks
+     */
+    private List<ParameterKeyValue> resolveParameters(PlannedStack stack) {
+      Map<String, ParameterKeyValue> parameters = new LinkedHashMap<>();
+      for (ParameterKeyValue parameter : stack.getParameters()) {
+        parameters.put(parameter.getParameterKey(), parameter);
+      }
+      for (OutputParameter outputParameter : stack.getOutputParameters()) {
+        String value = completed.get(outputParameter.getStackName()).getOutputs().stream()
+            .filter(output -> output.getOutputKey().equals(outputParameter.getOutputKey()))
+            .map(Output::getOutputValue)
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException(String.format("Stack '%s' has no output '%s' required by '%s'",
+                outputParameter.getStackName(), outputParameter.getOutputKey(), stack.getStackName())));
+        parameters.put(outputParameter.getParameterKey(), new ParameterKeyValue(outputParameter.getParameterKey(), value));
+      }
+      return new ArrayList<>(parameters.values());
+    }
+  }
+}
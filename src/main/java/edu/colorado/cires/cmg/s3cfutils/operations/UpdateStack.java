@@ -5,9 +5,13 @@ import static edu.colorado.cires.cmg.s3cfutils.operations.OperationUtils.writeOu
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.colorado.cires.cmg.s3cfutils.framework.CloudFormationOperations;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationMetrics;
+import edu.colorado.cires.cmg.s3cfutils.framework.OperationPhase;
 import edu.colorado.cires.cmg.s3cfutils.framework.ParameterKeyValue;
+import edu.colorado.cires.cmg.s3cfutils.framework.PhaseTimer;
 import edu.colorado.cires.cmg.s3cfutils.framework.S3Operations;
 import edu.colorado.cires.cmg.s3cfutils.framework.StackContext;
+import edu.colorado.cires.cmg.s3cfutils.framework.StackResult;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -25,11 +29,17 @@ public class UpdateStack {
   private final CloudFormationOperations cf;
   private final S3Operations s3;
   private final ObjectMapper objectMapper;
+  private final OperationMetrics metrics;
 
   public UpdateStack(CloudFormationOperations cf, S3Operations s3, ObjectMapper objectMapper) {
+    this(cf, s3, objectMapper, OperationMetrics.noop());
+  }
+
+  public UpdateStack(CloudFormationOperations cf, S3Operations s3, ObjectMapper objectMapper, OperationMetrics metrics) {
     this.cf = cf;
     this.s3 = s3;
     this.objectMapper = objectMapper;
+    this.metrics = metrics;
   }
 
   public void run(
@@ -46,8 +56,13 @@ public class UpdateStack {
   ) {
 
 
-    List<ParameterKeyValue> deploymentParameters = getParameters(Paths.get(deploymentParamsPath));
-    List<ParameterKeyValue> stackParameters = getParameters(Paths.get(stackParamsPath));
+    List<ParameterKeyValue> deploymentParameters;
+    List<ParameterKeyValue> stackParameters;
+    try (PhaseTimer timer = metrics.start(OperationPhase.PARAMETER_LOAD, applicationStackName)) {
+      deploymentParameters = getParameters(Paths.get(deploymentParamsPath));
+      stackParameters = getParameters(Paths.get(stackParamsPath));
+      timer.complete();
+    }
 
     String deploymentStackPrefix = getParamValue(deploymentParameters, ParameterConsts.StackPrefix.name());
     String applicationStackPrefix = getParamValue(stackParameters, ParameterConsts.StackPrefix.name());
@@ -67,7 +82,7 @@ public class UpdateStack {
 
     LOGGER.info("Updating AWS Resources: {}", applicationStackName);
 
-    OperationUtils.createOrUpdateStack(
+    StackResult result = OperationUtils.createOrUpdateStack(
         cf,
         s3,
         stackContext,
@@ -76,13 +91,17 @@ public class UpdateStack {
         deploymentParameters,
         stackParameters,
         cfPrefix,
-        applicationStackFileName
+        applicationStackFileName,
+        metrics
     );
 
     LOGGER.info("Done Updating AWS Resources: {}", applicationStackName);
 
     if (writeStackOutputs) {
-      writeOutputsToFile(cf, Paths.get(baseDir).resolve("target"), applicationStackName, stackContext);
+      try (PhaseTimer timer = metrics.start(OperationPhase.OUTPUT_WRITE, applicationStackName)) {
+        writeOutputsToFile(result, Paths.get(baseDir).resolve("target"));
+        timer.complete();
+      }
     }
 
   }